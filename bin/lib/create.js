@@ -77,7 +77,7 @@ function copyJsAndJar(projectPath, version) {
     shell.cp('-f', path.join(ROOT, 'framework', 'libs','awv_interface.jar'), path.join(projectPath, 'libs', 'awv_interface.jar'));
 }
 
-function copyScripts(projectPath) {
+function copyScripts(projectPath, version) {
     var srcScriptsDir = path.join(ROOT, 'bin', 'templates', 'cordova');
     var destScriptsDir = path.join(projectPath, 'cordova');
     // Delete old scripts directory if this is an update.
@@ -87,9 +87,22 @@ function copyScripts(projectPath) {
     shell.cp('-r', path.join(ROOT, 'bin', 'node_modules'), destScriptsDir);
     shell.cp(path.join(ROOT, 'bin', 'check_reqs'), path.join(destScriptsDir, 'check_reqs'));
     shell.cp(path.join(ROOT, 'bin', 'lib', 'check_reqs.js'), path.join(projectPath, 'cordova', 'lib', 'check_reqs.js'));
+    shell.cp(path.join(ROOT, 'framework', 'plugin-factory.xsl'), path.join(destScriptsDir, 'lib', 'plugin-factory.xsl'));
+    shell.cp(path.join(ROOT, 'framework', 'cordova-processor-' + version + '.jar'), path.join(destScriptsDir, 'lib', 'cordova-processor.jar'));
 
 }
 
+// Copies the custom_rules.xml that builds the plugin factory and runs the
+// annotation processor. One that the app wrote itself is left alone.
+function copyCustomRules(srcPath, projectPath) {
+    var destPath = path.join(projectPath, 'custom_rules.xml');
+    if (fs.existsSync(destPath) && fs.readFileSync(destPath, 'utf-8').indexOf('plugin-factory.xsl') == -1) {
+        console.log('Not replacing ' + destPath + '. Merge in the targets from ' + srcPath + ' to create plugins without reflection.');
+        return;
+    }
+    shell.cp('-f', srcPath, destPath);
+}
+
 /**
  * $ create [options]
  *
@@ -168,11 +181,15 @@ exports.createProject = function(project_path, package_name, project_name, proje
         shell.sed('-i', /__NAME__/, project_name, path.join(project_path, 'res', 'values', 'strings.xml'));
         shell.sed('-i', /__ID__/, package_name, activity_path);
 
+        // Generates the plugin factory at build time. Custom templates may not have one.
+        if (fs.existsSync(path.join(project_template_dir, 'custom_rules.xml'))) {
+            copyCustomRules(path.join(project_template_dir, 'custom_rules.xml'), project_path);
+        }
         shell.cp('-f', path.join(project_template_dir, 'AndroidManifest.xml'), manifest_path);
         shell.sed('-i', /__ACTIVITY__/, safe_activity_name, manifest_path);
         shell.sed('-i', /__PACKAGE__/, package_name, manifest_path);
         shell.sed('-i', /__APILEVEL__/, target_api.split('-')[1], manifest_path);
-        copyScripts(project_path);
+        copyScripts(project_path, VERSION);
     });
     // Link it to local android install.
     console.log('Running "android update project"');
@@ -189,7 +206,8 @@ exports.updateProject = function(projectPath) {
     var target_api = check_reqs.get_target();
     ensureJarIsBuilt(version, target_api);
     copyJsAndJar(projectPath, version);
-    copyScripts(projectPath);
+    copyScripts(projectPath, version);
+    copyCustomRules(path.join(ROOT, 'bin', 'templates', 'project', 'custom_rules.xml'), projectPath);
     console.log('Android project is now at version ' + version);
 };
 
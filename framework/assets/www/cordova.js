@@ -349,11 +349,21 @@ define("cordova/android/promptbasednativeapi", function(require, exports, module
 
 module.exports = {
     exec: function(service, action, callbackId, argsJson) {
+        // The "|" format is quicker for the native side to parse.
+        if ((service + action).indexOf('|') == -1) {
+            return prompt(argsJson, 'gap|' + service + '|' + action + '|' + callbackId);
+        }
         return prompt(argsJson, 'gap:'+JSON.stringify([service, action, callbackId]));
     },
     setNativeToJsBridgeMode: function(value) {
         prompt(value, 'gap_bridge_mode:');
     },
+    execBatch: function(batchJson) {
+        return prompt(batchJson, 'gap_batch:');
+    },
+    upload: function(handle, data) {
+        return prompt(data, 'gap_upload:' + handle);
+    },
     retrieveJsMessages: function(fromOnlineEvent) {
         return prompt(+fromOnlineEvent, 'gap_poll:');
     }
@@ -884,7 +894,11 @@ var cordova = require('cordova'),
     jsToNativeBridgeMode,  // Set lazily.
     nativeToJsBridgeMode = nativeToJsModes.ONLINE_EVENT,
     pollEnabled = false,
-    messagesFromNative = [];
+    messagesFromNative = [],
+    // Action ids of @CordovaAction methods, by service. See useActionIds().
+    actionIds = {},
+    // Chunks received so far of a message that was too large to send at once.
+    pendingChunks = '';
 
 function androidExec(success, fail, service, action, args) {
     // Set default bridge modes if they have not already been set.
@@ -893,37 +907,85 @@ function androidExec(success, fail, service, action, args) {
         androidExec.setJsToNativeBridgeMode(jsToNativeModes.JS_OBJECT);
     }
 
-    // Process any ArrayBuffers in the args into a string.
-    for (var i = 0; i < args.length; i++) {
-        if (utils.typeName(args[i]) == 'ArrayBuffer') {
-            args[i] = base64.fromArrayBuffer(args[i]);
-        }
-    }
-
-    var callbackId = service + cordova.callbackId++,
-        argsJson = JSON.stringify(args);
-
-    if (success || fail) {
-        cordova.callbacks[callbackId] = {success:success, fail:fail};
-    }
+    var callbackId = registerCallback(success, fail, service),
+        argsJson = encodeArgs(args);
 
     if (jsToNativeBridgeMode == jsToNativeModes.LOCATION_CHANGE) {
         window.location = 'http://cdv_exec/' + service + '#' + action + '#' + callbackId + '#' + argsJson;
     } else {
-        var messages = nativeApiProvider.get().exec(service, action, callbackId, argsJson);
+        var messages = nativeApiProvider.get().exec(service, encodeAction(service, action), callbackId, argsJson);
         // If argsJson was received by Java as null, try again with the PROMPT bridge mode.
         // This happens in rare circumstances, such as when certain Unicode characters are passed over the bridge on a Galaxy S2.  See CB-2666.
         if (jsToNativeBridgeMode == jsToNativeModes.JS_OBJECT && messages === "@Null arguments.") {
             androidExec.setJsToNativeBridgeMode(jsToNativeModes.PROMPT);
-            androidExec(success, fail, service, action, args);
+            callbackId = androidExec(success, fail, service, action, args);
             androidExec.setJsToNativeBridgeMode(jsToNativeModes.JS_OBJECT);
-            return;
+            return callbackId;
         } else {
             androidExec.processMessages(messages);
         }
     }
+    // Returned so that callers can refer to this call, e.g. in grantCredits().
+    return callbackId;
+}
+
+function registerCallback(success, fail, service) {
+    var callbackId = service + cordova.callbackId++;
+    if (success || fail) {
+        cordova.callbacks[callbackId] = {success:success, fail:fail};
+    }
+    return callbackId;
+}
+
+function encodeAction(service, action) {
+    var ids = actionIds[service];
+    return ids && ids.hasOwnProperty(action) ? '#' + ids[action] : action;
+}
+
+function encodeArgs(args) {
+    // Process any ArrayBuffers in the args into a string.
+    for (var i = 0; i < args.length; i++) {
+        if (utils.typeName(args[i]) == 'ArrayBuffer') {
+            args[i] = base64.fromArrayBuffer(args[i]);
+        }
+    }
+    return JSON.stringify(args);
 }
 
+// Runs several exec() calls with a single call into native code. Each entry of
+// calls is an array of the arguments to exec(): [success, fail, service, action, args].
+// They run in order, and their callbackIds are returned in the same order.
+androidExec.execBatch = function(calls) {
+    if (jsToNativeBridgeMode === undefined) {
+        androidExec.setJsToNativeBridgeMode(jsToNativeModes.JS_OBJECT);
+    }
+    var callbackIds = [];
+    if (jsToNativeBridgeMode == jsToNativeModes.LOCATION_CHANGE) {
+        for (var i = 0; i < calls.length; i++) {
+            callbackIds.push(androidExec.apply(null, calls[i]));
+        }
+        return callbackIds;
+    }
+
+    var batch = [];
+    for (var i = 0; i < calls.length; i++) {
+        var call = calls[i],
+            callbackId = registerCallback(call[0], call[1], call[2]);
+        batch.push([call[2], encodeAction(call[2], call[3]), callbackId, encodeArgs(call[4])]);
+        callbackIds.push(callbackId);
+    }
+    var batchJson = JSON.stringify(batch),
+        messages = nativeApiProvider.get().execBatch(batchJson);
+    // See the comment in androidExec() about CB-2666.
+    if (jsToNativeBridgeMode == jsToNativeModes.JS_OBJECT && messages === "@Null arguments.") {
+        androidExec.setJsToNativeBridgeMode(jsToNativeModes.PROMPT);
+        messages = nativeApiProvider.get().execBatch(batchJson);
+        androidExec.setJsToNativeBridgeMode(jsToNativeModes.JS_OBJECT);
+    }
+    androidExec.processMessages(messages);
+    return callbackIds;
+};
+
 function pollOnceFromOnlineEvent() {
     pollOnce(true);
 }
@@ -960,6 +1022,68 @@ hookOnlineApis();
 
 androidExec.jsToNativeModes = jsToNativeModes;
 androidExec.nativeToJsModes = nativeToJsModes;
+androidExec.pollOnce = pollOnce;
+
+// Looks up the ids of the service's @CordovaAction methods, so that later calls
+// to them send the id rather than the action name.
+androidExec.useActionIds = function(service) {
+    androidExec(function(ids) {
+        actionIds[service] = ids;
+    }, null, 'PluginManager', 'getActionIds', [service]);
+};
+
+// Lets a flow-controlled native callback (see CallbackContext.enableFlowControl())
+// send numCredits more results. callbackId is the value returned by exec().
+androidExec.grantCredits = function(callbackId, numCredits) {
+    androidExec(null, null, 'PluginManager', 'grantCredits', [callbackId, numCredits]);
+};
+
+// Sends binary data to native code without Base64-encoding it into the exec()
+// arguments. data is an ArrayBuffer or a Blob. callback is given a handle to pass
+// to the plugin in place of the data, which it reads with PluginManager.openUpload().
+// For ArrayBuffers, the callback is called right away and the handle is also returned.
+androidExec.upload = function(data, callback) {
+    if (utils.typeName(data) == 'ArrayBuffer') {
+        var handle = uploadBytes(new Uint8Array(data));
+        callback && callback(handle);
+        return handle;
+    }
+    var reader = new FileReader();
+    reader.onload = function() {
+        callback(uploadBytes(new Uint8Array(reader.result)));
+    };
+    reader.readAsArrayBuffer(data);
+};
+
+function uploadBytes(bytes) {
+    // Sent in chunks to bound the size of the strings that cross the bridge.
+    var CHUNK_SIZE = 512 * 1024,
+        // String.fromCharCode.apply() fails for too many arguments.
+        PIECE_SIZE = 8192,
+        handle = '',
+        start = 0;
+    do {
+        var end = Math.min(start + CHUNK_SIZE, bytes.length),
+            pieces = [];
+        for (var i = start; i < end; i += PIECE_SIZE) {
+            var codes = new Array(Math.min(PIECE_SIZE, end - i));
+            for (var j = 0; j < codes.length; j++) {
+                // Some bridges truncate strings at '\0'. Native code keeps only the low byte.
+                codes[j] = bytes[i + j] || 0x100;
+            }
+            pieces.push(String.fromCharCode.apply(null, codes));
+        }
+        var data = pieces.join(''),
+            ret = nativeApiProvider.get().upload(handle, data);
+        // See the comment in androidExec() about CB-2666.
+        if (ret === "@Null arguments.") {
+            ret = require('cordova/android/promptbasednativeapi').upload(handle, data);
+        }
+        handle = ret;
+        start = end;
+    } while (start < bytes.length);
+    return handle;
+}
 
 androidExec.setJsToNativeBridgeMode = function(mode) {
     if (mode == jsToNativeModes.JS_OBJECT && !window._cordovaNative) {
@@ -1060,7 +1184,17 @@ androidExec.processMessages = function(messages) {
             var msgLen = +messages.slice(0, spaceIdx);
             var message = messages.substr(spaceIdx + 1, msgLen);
             messages = messages.slice(spaceIdx + msgLen + 1);
-            processMessage(message);
+            // Large messages arrive as a series of 'C' chunks ending with a 'c' chunk.
+            var firstChar = message.charAt(0);
+            if (firstChar == 'C') {
+                pendingChunks += message.slice(1);
+            } else if (firstChar == 'c') {
+                message = pendingChunks + message.slice(1);
+                pendingChunks = '';
+                processMessage(message);
+            } else {
+                processMessage(message);
+            }
             if (messages) {
                 messagesFromNative[0] = messages;
             } else {
@@ -1301,7 +1435,7 @@ module.exports = {
             modulemapper = require('cordova/modulemapper');
 
         // Tell the native code that a page change has occurred.
-        exec(null, null, 'PluginManager', 'startup', []);
+        exec(null, null, 'PluginManager', 'startup', [window.location.href]);
         // Tell the JS that the native side is ready.
         channel.onNativeReady.fire();
 
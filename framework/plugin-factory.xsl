@@ -0,0 +1,100 @@
+<?xml version="1.0" encoding="UTF-8"?>
+<!--
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+-->
+<!-- Generates org.apache.cordova.GeneratedPluginFactory from res/xml/config.xml,
+     so that PluginEntry can create plugins without reflection. It is compiled
+     after the rest of the app; see the -post-compile target in custom_rules.xml. -->
+<xsl:stylesheet version="1.0" xmlns:xsl="http://www.w3.org/1999/XSL/Transform">
+    <xsl:output method="text" encoding="UTF-8"/>
+
+    <xsl:variable name="features" select="//*[local-name()='feature'][*[local-name()='param'][@name='android-package' or @name='package']]"/>
+
+    <xsl:template match="/">
+        <xsl:text>// Generated from config.xml by plugin-factory.xsl. Do not edit.
+package org.apache.cordova;
+
+import java.util.HashMap;
+
+public final class GeneratedPluginFactory implements PluginFactory {
+    // The case below for each service in config.xml.
+    private static final HashMap&lt;String, Integer&gt; SERVICE_IDS = new HashMap&lt;String, Integer&gt;();
+    // The plugin class of each case.
+    private static final String[] PLUGIN_CLASSES = {
+</xsl:text>
+        <xsl:for-each select="$features">
+            <xsl:text>        "</xsl:text>
+            <xsl:call-template name="plugin-class"/>
+            <xsl:text>",
+</xsl:text>
+        </xsl:for-each>
+        <xsl:text>    };
+
+    static {
+</xsl:text>
+        <xsl:for-each select="$features">
+            <xsl:text>        SERVICE_IDS.put("</xsl:text>
+            <xsl:call-template name="service"/>
+            <xsl:text>", </xsl:text>
+            <xsl:value-of select="position() - 1"/>
+            <xsl:text>);
+</xsl:text>
+        </xsl:for-each>
+        <xsl:text>    }
+
+    public CordovaPlugin create(String service, String pluginClass) {
+        Integer id = SERVICE_IDS.get(service);
+        // Services that were added or remapped at runtime are created through reflection.
+        if (id == null || !PLUGIN_CLASSES[id].equals(pluginClass)) {
+            return null;
+        }
+        switch (id) {
+</xsl:text>
+        <xsl:for-each select="$features">
+            <xsl:text>            case </xsl:text>
+            <xsl:value-of select="position() - 1"/>
+            <xsl:text>:
+                return new </xsl:text>
+            <xsl:call-template name="plugin-class"/>
+            <xsl:text>();
+</xsl:text>
+        </xsl:for-each>
+        <xsl:text>        }
+        return null;
+    }
+}
+</xsl:text>
+    </xsl:template>
+
+    <!-- Matches CompiledConfig.parse(): the last package param wins. -->
+    <xsl:template name="plugin-class">
+        <xsl:value-of select="normalize-space(*[local-name()='param'][@name='android-package' or @name='package'][last()]/@value)"/>
+    </xsl:template>
+
+    <!-- The older service param takes precedence over the name attribute. -->
+    <xsl:template name="service">
+        <xsl:choose>
+            <xsl:when test="*[local-name()='param'][@name='service']">
+                <xsl:value-of select="*[local-name()='param'][@name='service'][last()]/@value"/>
+            </xsl:when>
+            <xsl:otherwise>
+                <xsl:value-of select="@name"/>
+            </xsl:otherwise>
+        </xsl:choose>
+    </xsl:template>
+</xsl:stylesheet>
@@ -0,0 +1,275 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a <plugin class>$$CordovaActions class for each plugin class with
+ * &#64;CordovaAction methods. It implements org.apache.cordova.ActionDispatcher
+ * with a switch that calls the methods directly, so that ActionTable doesn't
+ * need Method.invoke().
+ *
+ * Runs as part of javac when this jar is on the processor path (see
+ * bin/templates/project/custom_rules.xml). Classes that weren't compiled with
+ * it are dispatched through reflection.
+ */
+public class CordovaActionProcessor extends AbstractProcessor {
+    private static final String ANNOTATION = "org.apache.cordova.CordovaAction";
+    private static final String ARGS = "org.apache.cordova.CordovaArgs";
+    private static final String CALLBACK_CONTEXT = "org.apache.cordova.CallbackContext";
+    private static final String JSON_EXCEPTION = "org.json.JSONException";
+    private static final String SUFFIX = "$$CordovaActions";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ANNOTATION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION);
+        if (annotation == null) {
+            return false;
+        }
+        // Plugin classes in the order that they were found.
+        Map<TypeElement, Boolean> pluginClasses = new LinkedHashMap<TypeElement, Boolean>();
+        for (Element e : roundEnv.getElementsAnnotatedWith(annotation)) {
+            pluginClasses.put((TypeElement) e.getEnclosingElement(), Boolean.TRUE);
+        }
+        for (TypeElement pluginClass : pluginClasses.keySet()) {
+            if (!isAccessible(pluginClass)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "Not generating " + SUFFIX + " for a class that isn't public; its actions use reflection", pluginClass);
+                continue;
+            }
+            Map<String, ExecutableElement> actions = findActions(pluginClass);
+            if (actions == null) {
+                continue;
+            }
+            try {
+                writeDispatcher(pluginClass, actions);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Failed to write " + SUFFIX + ": " + e, pluginClass);
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAccessible(TypeElement type) {
+        for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            TypeElement t = (TypeElement) e;
+            if (!t.getModifiers().contains(Modifier.PUBLIC)) {
+                return false;
+            }
+            if (t.getNestingKind() == NestingKind.MEMBER && !t.getModifiers().contains(Modifier.STATIC)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns the actions of the class and its superclasses by name, sorted the
+    // same way that ActionTable assigns ids, or null if any are invalid. The
+    // rules match ActionTable.findAnnotatedMethods(): subclasses are searched
+    // first, and the first method found for a name wins.
+    private Map<String, ExecutableElement> findActions(TypeElement pluginClass) {
+        TreeMap<String, ExecutableElement> ret = new TreeMap<String, ExecutableElement>();
+        boolean valid = true;
+        for (TypeElement t = pluginClass; t != null; t = superclassOf(t)) {
+            Set<String> declared = new HashSet<String>();
+            for (Element e : t.getEnclosedElements()) {
+                String name = getActionName(e);
+                if (name == null) {
+                    continue;
+                }
+                ExecutableElement method = (ExecutableElement) e;
+                if (!hasActionSignature(method)) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "@CordovaAction methods must be public, take (CordovaArgs, CallbackContext), return void or boolean, "
+                            + "and throw no checked exceptions other than JSONException", method);
+                    valid = false;
+                    continue;
+                }
+                if (!declared.add(name)) {
+                    // The reflection fallback couldn't tell which one to pick.
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "Duplicate @CordovaAction \"" + name + "\"", method);
+                    valid = false;
+                    continue;
+                }
+                // Overrides in subclasses are seen first.
+                if (!ret.containsKey(name)) {
+                    ret.put(name, method);
+                }
+            }
+        }
+        return valid ? ret : null;
+    }
+
+    private TypeElement superclassOf(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement) processingEnv.getTypeUtils().asElement(superclass);
+    }
+
+    private static String getActionName(Element e) {
+        for (AnnotationMirror mirror : e.getAnnotationMirrors()) {
+            if (!((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(ANNOTATION)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("value")) {
+                    String value = (String) entry.getValue().getValue();
+                    if (value.length() > 0) {
+                        return value;
+                    }
+                }
+            }
+            return e.getSimpleName().toString();
+        }
+        return null;
+    }
+
+    private boolean hasActionSignature(ExecutableElement method) {
+        if (!method.getModifiers().contains(Modifier.PUBLIC) || method.getModifiers().contains(Modifier.STATIC)) {
+            return false;
+        }
+        List<? extends VariableElement> params = method.getParameters();
+        if (params.size() != 2 || !isType(params.get(0).asType(), ARGS) || !isType(params.get(1).asType(), CALLBACK_CONTEXT)) {
+            return false;
+        }
+        TypeKind returnKind = method.getReturnType().getKind();
+        if (returnKind != TypeKind.VOID && returnKind != TypeKind.BOOLEAN) {
+            return false;
+        }
+        TypeMirror runtimeException = processingEnv.getElementUtils().getTypeElement("java.lang.RuntimeException").asType();
+        TypeMirror error = processingEnv.getElementUtils().getTypeElement("java.lang.Error").asType();
+        for (TypeMirror thrown : method.getThrownTypes()) {
+            if (!isType(thrown, JSON_EXCEPTION) && !processingEnv.getTypeUtils().isAssignable(thrown, runtimeException)
+                    && !processingEnv.getTypeUtils().isAssignable(thrown, error)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isType(TypeMirror type, String name) {
+        Element e = processingEnv.getTypeUtils().asElement(type);
+        return e instanceof TypeElement && ((TypeElement) e).getQualifiedName().contentEquals(name);
+    }
+
+    private void writeDispatcher(TypeElement pluginClass, Map<String, ExecutableElement> actions) throws IOException {
+        String packageName = processingEnv.getElementUtils().getPackageOf(pluginClass).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(pluginClass).toString();
+        String simpleName = (packageName.length() == 0 ? binaryName : binaryName.substring(packageName.length() + 1)) + SUFFIX;
+        String qualifiedName = packageName.length() == 0 ? simpleName : packageName + "." + simpleName;
+        String[] names = actions.keySet().toArray(new String[actions.size()]);
+        Arrays.sort(names);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("// Generated by CordovaActionProcessor. Do not edit.\n");
+        if (packageName.length() > 0) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("public final class ").append(simpleName).append(" implements org.apache.cordova.ActionDispatcher {\n");
+        sb.append("    public String[] getActionNames() {\n");
+        sb.append("        return new String[] {");
+        for (int i = 0; i < names.length; ++i) {
+            sb.append(i == 0 ? " " : ", ").append(quote(names[i]));
+        }
+        sb.append(" };\n");
+        sb.append("    }\n\n");
+        sb.append("    public boolean invoke(org.apache.cordova.CordovaPlugin plugin, int id, org.apache.cordova.CordovaArgs args,\n");
+        sb.append("            org.apache.cordova.CallbackContext callbackContext) throws org.json.JSONException {\n");
+        sb.append("        ").append(pluginClass.getQualifiedName()).append(" p = (").append(pluginClass.getQualifiedName()).append(") plugin;\n");
+        sb.append("        switch (id) {\n");
+        for (int i = 0; i < names.length; ++i) {
+            ExecutableElement method = actions.get(names[i]);
+            sb.append("            case ").append(i).append(":\n");
+            if (method.getReturnType().getKind() == TypeKind.VOID) {
+                sb.append("                p.").append(method.getSimpleName()).append("(args, callbackContext);\n");
+                sb.append("                return true;\n");
+            } else {
+                sb.append("                return p.").append(method.getSimpleName()).append("(args, callbackContext);\n");
+            }
+        }
+        sb.append("            default:\n");
+        sb.append("                return false;\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, pluginClass);
+        Writer writer = file.openWriter();
+        try {
+            writer.write(sb.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ' || c > '~') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
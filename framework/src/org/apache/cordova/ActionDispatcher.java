@@ -0,0 +1,40 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import org.json.JSONException;
+
+/**
+ * Calls the @CordovaAction methods of one plugin class without reflection.
+ *
+ * The ant build implements this as <plugin class>$$CordovaActions, which
+ * CordovaActionProcessor generates for each plugin class with annotated
+ * methods. It calls each method from a switch on the action id.
+ */
+public interface ActionDispatcher {
+    /**
+     * Returns the action names, sorted. An action's id is its index.
+     */
+    String[] getActionNames();
+
+    /**
+     * Runs the action with the given id on plugin. Returns whether the action was valid.
+     */
+    boolean invoke(CordovaPlugin plugin, int id, CordovaArgs args, CallbackContext callbackContext) throws JSONException;
+}
@@ -0,0 +1,210 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The @CordovaAction methods of a plugin class, indexed by action id. Ids are
+ * assigned in order of action name, and JS can send "#<id>" in place of the
+ * action name to skip the name lookup.
+ *
+ * Actions are called through the class's generated ActionDispatcher. Classes
+ * that were compiled without CordovaActionProcessor (e.g. by Eclipse) fall back
+ * to Method.invoke().
+ */
+class ActionTable {
+    private static final String LOG_TAG = "ActionTable";
+    private static final String DISPATCHER_SUFFIX = "$$CordovaActions";
+
+    private static final ConcurrentHashMap<Class<?>, ActionTable> tablesByClass = new ConcurrentHashMap<Class<?>, ActionTable>();
+
+    final Class<?> pluginClass;
+    private final String[] names;
+    private final ActionDispatcher dispatcher;
+    // Only used when there is no dispatcher.
+    private final Method[] methods;
+    private final HashMap<String, Integer> idsByName = new HashMap<String, Integer>();
+
+    /**
+     * Returns the table of the given class. Built once per class.
+     */
+    static ActionTable forClass(Class<?> pluginClass) {
+        ActionTable ret = tablesByClass.get(pluginClass);
+        if (ret == null) {
+            ret = new ActionTable(pluginClass);
+            ActionTable existing = tablesByClass.putIfAbsent(pluginClass, ret);
+            if (existing != null) {
+                ret = existing;
+            }
+        }
+        return ret;
+    }
+
+    ActionTable(Class<?> pluginClass) {
+        this.pluginClass = pluginClass;
+        dispatcher = loadDispatcher(pluginClass);
+        if (dispatcher != null) {
+            names = dispatcher.getActionNames();
+            methods = null;
+        } else {
+            HashMap<String, Method> found = findAnnotatedMethods(pluginClass);
+            names = found.keySet().toArray(new String[found.size()]);
+            Arrays.sort(names);
+            methods = new Method[names.length];
+            for (int i = 0; i < names.length; ++i) {
+                methods[i] = found.get(names[i]);
+            }
+        }
+        for (int i = 0; i < names.length; ++i) {
+            idsByName.put(names[i], i);
+        }
+    }
+
+    private static ActionDispatcher loadDispatcher(Class<?> pluginClass) {
+        String name = pluginClass.getName() + DISPATCHER_SUFFIX;
+        try {
+            return (ActionDispatcher) Class.forName(name, true, pluginClass.getClassLoader()).newInstance();
+        } catch (ClassNotFoundException e) {
+            LOG.d(LOG_TAG, name + " not found, calling actions through reflection");
+        } catch (Exception e) {
+            LOG.e(LOG_TAG, "Failed to create " + name, e);
+        }
+        return null;
+    }
+
+    // Follows the same rules as CordovaActionProcessor, so that ids are the same
+    // whether or not the class was compiled with it: the class and then its
+    // superclasses are searched, and the first method found for a name wins.
+    private static HashMap<String, Method> findAnnotatedMethods(Class<?> pluginClass) {
+        HashMap<String, Method> found = new HashMap<String, Method>();
+        for (Class<?> c = pluginClass; c != null; c = c.getSuperclass()) {
+            HashMap<String, Method> declared = new HashMap<String, Method>();
+            for (Method m : c.getDeclaredMethods()) {
+                CordovaAction annotation = m.getAnnotation(CordovaAction.class);
+                if (annotation == null) {
+                    continue;
+                }
+                if (!hasActionSignature(m)) {
+                    LOG.e(LOG_TAG, "Ignoring @CordovaAction with the wrong signature: " + m);
+                    continue;
+                }
+                String name = annotation.value().length() > 0 ? annotation.value() : m.getName();
+                if (declared.put(name, m) != null) {
+                    LOG.e(LOG_TAG, "Duplicate @CordovaAction \"" + name + "\" in " + c.getName());
+                }
+            }
+            for (String name : declared.keySet()) {
+                // Subclasses are seen first.
+                if (!found.containsKey(name)) {
+                    found.put(name, declared.get(name));
+                }
+            }
+        }
+        return found;
+    }
+
+    private static boolean hasActionSignature(Method m) {
+        int modifiers = m.getModifiers();
+        if (!Modifier.isPublic(modifiers) || Modifier.isStatic(modifiers)) {
+            return false;
+        }
+        Class<?>[] params = m.getParameterTypes();
+        Class<?> returnType = m.getReturnType();
+        if (params.length != 2 || params[0] != CordovaArgs.class || params[1] != CallbackContext.class
+                || (returnType != void.class && returnType != boolean.class)) {
+            return false;
+        }
+        for (Class<?> thrown : m.getExceptionTypes()) {
+            if (thrown != JSONException.class && !RuntimeException.class.isAssignableFrom(thrown) && !Error.class.isAssignableFrom(thrown)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isEmpty() {
+        return names.length == 0;
+    }
+
+    /**
+     * Returns the id of the given action name or "#<id>" string, or -1 if it
+     * isn't an annotated action.
+     */
+    int resolve(String action) {
+        if (action.length() > 1 && action.charAt(0) == '#') {
+            try {
+                int id = Integer.parseInt(action.substring(1));
+                return id >= 0 && id < names.length ? id : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        Integer id = idsByName.get(action);
+        return id == null ? -1 : id;
+    }
+
+    String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * Returns whether the action was valid.
+     */
+    boolean invoke(CordovaPlugin plugin, int id, CordovaArgs args, CallbackContext callbackContext) throws JSONException {
+        if (dispatcher != null) {
+            return dispatcher.invoke(plugin, id, args, callbackContext);
+        }
+        try {
+            Object ret = methods[id].invoke(plugin, args, callbackContext);
+            return ret == null || ((Boolean) ret).booleanValue();
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JSONException) {
+                throw (JSONException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns action ids by name, for JS.
+     */
+    JSONObject toJSON() throws JSONException {
+        JSONObject ret = new JSONObject();
+        for (int i = 0; i < names.length; ++i) {
+            ret.put(names[i], i);
+        }
+        return ret;
+    }
+}
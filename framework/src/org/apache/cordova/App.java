@@ -81,6 +81,9 @@ public class App extends CordovaPlugin {
             else if (action.equals("exitApp")) {
                 this.exitApp();
             }
+            else if (action.equals("setBridgeOptions")) {
+                this.setBridgeOptions(args.getJSONObject(0));
+            }
             callbackContext.sendPluginResult(new PluginResult(status, result));
             return true;
         } catch (JSONException e) {
@@ -93,6 +96,21 @@ public class App extends CordovaPlugin {
     // LOCAL METHODS
     //--------------------------------------------------------------------------
 
+    /**
+     * Change how messages are sent over the bridge. Meant for benchmarking.
+     *
+     * @param options       Object with optional boolean forceEncodeUsingEval and disableExecChaining properties.
+     */
+    public void setBridgeOptions(JSONObject options) {
+        NativeToJsMessageQueue queue = webView.jsMessageQueue;
+        if (options.has("forceEncodeUsingEval")) {
+            queue.setForceEncodeUsingEval(options.optBoolean("forceEncodeUsingEval"));
+        }
+        if (options.has("disableExecChaining")) {
+            queue.setExecChainingDisabled(options.optBoolean("disableExecChaining"));
+        }
+    }
+
     /**
      * Clear the resource cache.
      */
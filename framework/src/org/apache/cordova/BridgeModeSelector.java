@@ -0,0 +1,211 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Handler;
+import android.util.Log;
+
+/**
+ * Works out which native->JS bridge mode delivers messages fastest on this
+ * device and WebView backend.
+ *
+ * With no saved decision, NativeToJsMessageQueue sends probe messages that JS
+ * acknowledges with an exec(), and times the round trip. Probes are only sent
+ * while the queue is otherwise empty, and they take turns between the candidate
+ * modes, so that every mode is measured under the same conditions. Once each
+ * mode that works has SAMPLES_PER_MODE samples, the one with the lowest median
+ * is saved, so that later launches start with it. All methods must be called
+ * while holding the lock on the NativeToJsMessageQueue.
+ */
+class BridgeModeSelector {
+    private static final String LOG_TAG = "BridgeModeSelector";
+    private static final String PREFS_NAME = "org.apache.cordova.BridgeModeSelector";
+
+    // Bridge modes to try, in order of preference when equally fast.
+    private static final int[] CANDIDATE_MODES = { 2, 3, 1 };
+    private static final int SAMPLES_PER_MODE = 20;
+
+    private final SharedPreferences prefs;
+    private final String prefsKey;
+    // Preferences are written from here, after the queue's lock is released.
+    private final Handler handler;
+
+    private boolean measuring;
+    // Index into CANDIDATE_MODES of the mode that was last probed.
+    private int probeIndex = -1;
+    private final Histogram[] latencies = new Histogram[CANDIDATE_MODES.length];
+    private final boolean[] failed = new boolean[CANDIDATE_MODES.length];
+    private int selectedMode;
+
+    BridgeModeSelector(Context context, CordovaWebView.WebViewBackend backend, Handler handler) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.handler = handler;
+        // A system update or a different backend can change which mode works best.
+        prefsKey = Build.FINGERPRINT + "|" + backend;
+        selectedMode = prefs.getInt(prefsKey, -1);
+        if (selectedMode == -1) {
+            Log.d(LOG_TAG, "No saved bridge mode for " + prefsKey + ". Measuring.");
+            for (int i = 0; i < CANDIDATE_MODES.length; ++i) {
+                latencies[i] = new Histogram();
+            }
+            measuring = true;
+            selectedMode = CANDIDATE_MODES[0];
+        }
+    }
+
+    /**
+     * Returns the mode that should be active when no probe is in flight.
+     */
+    int getSelectedMode() {
+        return selectedMode;
+    }
+
+    boolean isMeasuring() {
+        return measuring;
+    }
+
+    /**
+     * Returns the mode to send the next probe with, or -1 if none need more samples.
+     */
+    int nextProbeMode() {
+        for (int i = 0; i < CANDIDATE_MODES.length; ++i) {
+            probeIndex = (probeIndex + 1) % CANDIDATE_MODES.length;
+            if (!failed[probeIndex] && latencies[probeIndex].getCount() < SAMPLES_PER_MODE) {
+                return CANDIDATE_MODES[probeIndex];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Records the round trip of a probe sent with the given mode. Returns true
+     * if the selected mode changed.
+     */
+    boolean onProbeAcked(int mode, long roundTripNanos) {
+        int i = indexOf(mode);
+        if (!measuring || i == -1) {
+            return false;
+        }
+        latencies[i].record(roundTripNanos / 1000);
+        return maybeFinishMeasuring();
+    }
+
+    /**
+     * Records that the given mode doesn't work. Returns true if the selected mode changed.
+     */
+    boolean onModeFailed(int mode) {
+        int i = indexOf(mode);
+        if (i == -1 || failed[i]) {
+            return false;
+        }
+        Log.w(LOG_TAG, "Bridge mode " + mode + " does not work on " + prefsKey);
+        failed[i] = true;
+        int previousMode = selectedMode;
+        if (!measuring) {
+            // A saved decision went bad. Measure again next time.
+            save(-1);
+            selectedMode = fallbackMode();
+        } else {
+            if (selectedMode == mode) {
+                selectedMode = fallbackMode();
+            }
+            maybeFinishMeasuring();
+        }
+        return selectedMode != previousMode;
+    }
+
+    private boolean maybeFinishMeasuring() {
+        for (int i = 0; i < CANDIDATE_MODES.length; ++i) {
+            if (!failed[i] && latencies[i].getCount() < SAMPLES_PER_MODE) {
+                return false;
+            }
+        }
+        int previousMode = selectedMode;
+        measuring = false;
+        selectedMode = fastestMode();
+        save(selectedMode);
+        Log.d(LOG_TAG, "Selected bridge mode " + selectedMode + " for " + prefsKey);
+        return selectedMode != previousMode;
+    }
+
+    private static int indexOf(int mode) {
+        for (int i = 0; i < CANDIDATE_MODES.length; ++i) {
+            if (CANDIDATE_MODES[i] == mode) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int fastestMode() {
+        int ret = -1;
+        long bestLatency = Long.MAX_VALUE;
+        for (int i = 0; i < CANDIDATE_MODES.length; ++i) {
+            if (!failed[i] && latencies[i] != null && latencies[i].getCount() > 0) {
+                long latency = latencies[i].getPercentile(0.5);
+                if (latency < bestLatency) {
+                    bestLatency = latency;
+                    ret = CANDIDATE_MODES[i];
+                }
+            }
+        }
+        return ret == -1 ? fallbackMode() : ret;
+    }
+
+    private int fallbackMode() {
+        for (int i = 0; i < CANDIDATE_MODES.length; ++i) {
+            if (!failed[i]) {
+                return CANDIDATE_MODES[i];
+            }
+        }
+        // Polling always works, since JS drives it.
+        return 0;
+    }
+
+    // Saves the given mode, or forgets the saved one if mode is -1.
+    private void save(final int mode) {
+        handler.post(new Runnable() {
+            public void run() {
+                SharedPreferences.Editor editor = prefs.edit();
+                if (mode == -1) {
+                    editor.remove(prefsKey);
+                } else {
+                    editor.putInt(prefsKey, mode);
+                }
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+                    EditorApplier.apply(editor);
+                } else {
+                    editor.commit();
+                }
+            }
+        });
+    }
+
+    /** Kept in its own class so that Froyo never resolves apply(). */
+    @TargetApi(Build.VERSION_CODES.GINGERBREAD)
+    private static class EditorApplier {
+        static void apply(SharedPreferences.Editor editor) {
+            editor.apply();
+        }
+    }
+}
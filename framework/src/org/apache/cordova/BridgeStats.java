@@ -0,0 +1,95 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Latency and throughput of native->JS messages, kept separately for each way
+ * that messages reach JS.
+ */
+public class BridgeStats {
+    // Indices 0-3 match the bridge modes of NativeToJsMessageQueue.
+    static final int EXEC_RETURN = 4;
+    private static final String[] CHANNEL_NAMES = {
+        "polling", "loadUrl", "onlineEvents", "privateApi", "execReturn"
+    };
+
+    private final Histogram[] queueLatencyMicros = new Histogram[CHANNEL_NAMES.length];
+    private final Histogram[] messagesPerFlush = new Histogram[CHANNEL_NAMES.length];
+    private final Histogram[] charsPerFlush = new Histogram[CHANNEL_NAMES.length];
+
+    BridgeStats() {
+        for (int i = 0; i < CHANNEL_NAMES.length; ++i) {
+            queueLatencyMicros[i] = new Histogram();
+            messagesPerFlush[i] = new Histogram();
+            charsPerFlush[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Records how long a message waited between being enqueued and being handed to JS.
+     */
+    void recordQueueLatency(int channel, long latencyNanos) {
+        queueLatencyMicros[channel].record(latencyNanos / 1000);
+    }
+
+    void recordFlush(int channel, int numMessages, int numChars) {
+        messagesPerFlush[channel].record(numMessages);
+        charsPerFlush[channel].record(numChars);
+    }
+
+    public void reset() {
+        for (int i = 0; i < CHANNEL_NAMES.length; ++i) {
+            queueLatencyMicros[i].reset();
+            messagesPerFlush[i].reset();
+            charsPerFlush[i].reset();
+        }
+    }
+
+    public JSONObject toJSON() throws JSONException {
+        JSONObject ret = new JSONObject();
+        for (int i = 0; i < CHANNEL_NAMES.length; ++i) {
+            if (messagesPerFlush[i].getCount() == 0) {
+                continue;
+            }
+            JSONObject channel = new JSONObject();
+            channel.put("queueLatencyMicros", queueLatencyMicros[i].toJSON());
+            channel.put("messagesPerFlush", messagesPerFlush[i].toJSON());
+            channel.put("charsPerFlush", charsPerFlush[i].toJSON());
+            ret.put(CHANNEL_NAMES[i], channel);
+        }
+        return ret;
+    }
+
+    /**
+     * Writes the stats to the given file as JSON, replacing its contents.
+     */
+    public void writeTo(File file) throws IOException {
+        try {
+            StatsFiles.write(file, toJSON());
+        } catch (JSONException e) {
+            throw new IOException(e.toString());
+        }
+    }
+}
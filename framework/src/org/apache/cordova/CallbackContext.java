@@ -18,8 +18,13 @@
 */
 package org.apache.cordova;
 
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.json.JSONArray;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import org.apache.cordova.CordovaWebView;
@@ -29,20 +34,190 @@ import org.json.JSONObject;
 public class CallbackContext {
     private static final String LOG_TAG = "CordovaPlugin";
 
+    /**
+     * What happens to a keepCallback result sent to a flow-controlled callback
+     * that has no credits left.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait until JS grants more credits. Threads that JS itself is waiting
+         * on (the UI and WebCore threads) never wait, and fail instead.
+         */
+        BLOCK,
+        /**
+         * Don't send the result. trySendPluginResult() returns false.
+         */
+        FAIL
+    }
+
+    /**
+     * Notified when JS grants credits to a flow-controlled callback that had run out.
+     */
+    public interface WritableListener {
+        /**
+         * Called on the thread that received the credits (usually the WebCore thread),
+         * so it should not do long-running work.
+         */
+        void onWritable(CallbackContext callbackContext);
+    }
+
+    /**
+     * Notified when a callback is cancelled, so that the plugin can stop work
+     * whose result is no longer wanted (e.g. a download).
+     */
+    public interface CancellationListener {
+        /**
+         * Called on the thread that cancelled the callback. For page changes and
+         * timeouts, that is the UI thread.
+         */
+        void onCancelled(CallbackContext callbackContext);
+    }
+
+    private static Handler timeoutHandler;
+
     private String callbackId;
     private CordovaWebView webView;
     private boolean finished;
+    // Set once the result is no longer wanted. Results sent after that are dropped.
+    private volatile boolean cancelled;
+    private CancellationListener cancellationListener;
+    private Runnable timeoutRunnable;
+    private boolean coalescing;
     private int changingThreads;
 
+    // Flow control state. Guarded by the lock on "this".
+    private boolean flowControlled;
+    private OverflowPolicy overflowPolicy;
+    private int credits;
+    private boolean outOfCredits;
+    private boolean flowControlAborted;
+    private WritableListener writableListener;
+    // Streams waiting for credits before queueing their next chunk.
+    private final ArrayList<Runnable> parkedStreams = new ArrayList<Runnable>();
+    // Number of results sent by this context that are still in the native queue.
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    // The NativeToJsMessageQueue epoch that the exec() was made in, or -1 if not made through exec().
+    private volatile int epoch = -1;
+
+    // Where to record how long the exec() call took to send its final result.
+    private ExecStats.ActionStats execStats;
+    private long execStartNanos;
+
     public CallbackContext(String callbackId, CordovaWebView webView) {
         this.callbackId = callbackId;
         this.webView = webView;
     }
     
     public boolean isFinished() {
-        return finished;
+        synchronized (this) {
+            return finished;
+        }
     }
     
+    /**
+     * Returns whether the callback was cancelled, either because the page that
+     * made the call went away or because its timeout expired.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Sets the listener to call when the callback is cancelled. If it already
+     * was, the listener is called right away.
+     */
+    public void setCancellationListener(CancellationListener listener) {
+        boolean alreadyCancelled;
+        synchronized (this) {
+            cancellationListener = listener;
+            alreadyCancelled = cancelled;
+        }
+        if (alreadyCancelled && listener != null) {
+            listener.onCancelled(this);
+        }
+    }
+
+    /**
+     * Marks the callback as no longer wanted. Results sent after this are
+     * dropped without being encoded. Has no effect once the final result is sent.
+     */
+    public void cancel() {
+        if (markCancelled(false)) {
+            notifyCancelled();
+        }
+    }
+
+    /**
+     * Cancels the callback if its final result hasn't been sent within the given
+     * time, and sends JS an error result saying that it timed out.
+     */
+    public void setTimeout(long timeoutMillis) {
+        Runnable r = new Runnable() {
+            public void run() {
+                if (markCancelled(true)) {
+                    PluginResult result = new PluginResult(PluginResult.Status.ERROR, "Timed out");
+                    result.epoch = epoch;
+                    webView.sendPluginResult(result, callbackId);
+                    notifyCancelled();
+                }
+            }
+        };
+        Handler handler = getTimeoutHandler();
+        synchronized (this) {
+            if (finished || cancelled) {
+                return;
+            }
+            if (timeoutRunnable != null) {
+                handler.removeCallbacks(timeoutRunnable);
+            }
+            timeoutRunnable = r;
+        }
+        handler.postDelayed(r, timeoutMillis);
+    }
+
+    private static synchronized Handler getTimeoutHandler() {
+        if (timeoutHandler == null) {
+            timeoutHandler = new Handler(Looper.getMainLooper());
+        }
+        return timeoutHandler;
+    }
+
+    // Returns whether the callback was cancelled by this call.
+    private boolean markCancelled(boolean finish) {
+        Runnable timeout;
+        synchronized (this) {
+            if (finished || cancelled) {
+                return false;
+            }
+            cancelled = true;
+            finished = finish;
+            timeout = timeoutRunnable;
+            timeoutRunnable = null;
+            // Senders that are waiting for credits give up.
+            notifyAll();
+        }
+        resumeStreams();
+        if (timeout != null) {
+            getTimeoutHandler().removeCallbacks(timeout);
+        }
+        if (webView.pluginManager != null) {
+            webView.pluginManager.removeFlowControlledCallback(this);
+            webView.pluginManager.removePendingCallback(this);
+        }
+        return true;
+    }
+
+    private void notifyCancelled() {
+        CancellationListener listener;
+        synchronized (this) {
+            listener = cancellationListener;
+        }
+        if (listener != null) {
+            listener.onCancelled(this);
+        }
+    }
+
     public boolean isChangingThreads() {
         return changingThreads > 0;
     }
@@ -51,16 +226,269 @@ public class CallbackContext {
         return callbackId;
     }
 
+    /**
+     * When enabled, a keepCallback result sent through this context replaces any
+     * previous one that JS has not yet received (e.g. stale sensor readings).
+     * Results without keepCallback are never dropped or reordered.
+     */
+    public void setCoalescing(boolean value) {
+        coalescing = value;
+    }
+
+    public boolean isCoalescing() {
+        return coalescing;
+    }
+
+    /**
+     * Limits how many keepCallback results can be sent before JS asks for more, so
+     * that a fast producer can't queue up results faster than JS processes them.
+     * Each keepCallback result uses up one credit, and JS grants more with
+     * cordova.require('cordova/exec').grantCredits(callbackId, n). The final
+     * result of a callback is always sent.
+     *
+     * @param initialCredits    The number of results that can be sent right away.
+     * @param policy            What to do with a result when there are no credits left.
+     */
+    public void enableFlowControl(int initialCredits, OverflowPolicy policy) {
+        synchronized (this) {
+            flowControlled = true;
+            credits = initialCredits;
+            overflowPolicy = policy;
+        }
+        webView.pluginManager.addFlowControlledCallback(this);
+    }
+
+    public boolean isFlowControlled() {
+        synchronized (this) {
+            return flowControlled;
+        }
+    }
+
+    /**
+     * Sets the listener to call when more credits arrive after running out.
+     */
+    public void setWritableListener(WritableListener listener) {
+        synchronized (this) {
+            writableListener = listener;
+        }
+    }
+
+    /**
+     * Returns the number of keepCallback results that can be sent before running out of credits.
+     */
+    public int getCredits() {
+        synchronized (this) {
+            return credits;
+        }
+    }
+
+    /**
+     * Returns the number of results sent by a flow-controlled callback that have
+     * not yet been handed to JS.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Called by PluginManager before calling execute().
+     */
+    void setExecStats(ExecStats.ActionStats stats, long startNanos) {
+        execStats = stats;
+        execStartNanos = startNanos;
+    }
+
+    /**
+     * Called by PluginManager.exec() with the epoch of the page that made the call.
+     */
+    void setEpoch(int epoch) {
+        this.epoch = epoch;
+    }
+
+    int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Called by PluginManager when JS grants credits.
+     */
+    void grantCredits(int numCredits) {
+        WritableListener listener = null;
+        synchronized (this) {
+            if (!flowControlled || finished) {
+                return;
+            }
+            credits += numCredits;
+            if (outOfCredits && credits > 0) {
+                outOfCredits = false;
+                listener = writableListener;
+            }
+            notifyAll();
+        }
+        resumeStreams();
+        if (listener != null) {
+            listener.onWritable(this);
+        }
+    }
+
+    /**
+     * Called by PluginManager when the page goes away. Blocked senders give up.
+     */
+    void abortFlowControl() {
+        synchronized (this) {
+            flowControlAborted = true;
+            notifyAll();
+        }
+        resumeStreams();
+    }
+
+    /**
+     * Called by NativeToJsMessageQueue before it reads each chunk of a stream
+     * after the first, which took the place of the stream result itself. Streams
+     * can't drop chunks or block a pool thread, so when out of credits this
+     * returns false and runs resume once JS grants more. The chunks of a final
+     * result are let through, since JS can't grant credits to a finished
+     * callback; the stream still sends only one chunk at a time.
+     */
+    boolean takeStreamCredit(Runnable resume) {
+        synchronized (this) {
+            if (!flowControlled || flowControlAborted || cancelled || finished) {
+                return true;
+            }
+            if (credits > 0) {
+                credits -= 1;
+                return true;
+            }
+            outOfCredits = true;
+            parkedStreams.add(resume);
+            return false;
+        }
+    }
+
+    private void resumeStreams() {
+        Runnable[] streams;
+        synchronized (this) {
+            if (parkedStreams.isEmpty() || (credits <= 0 && !flowControlAborted && !cancelled && !finished)) {
+                return;
+            }
+            streams = parkedStreams.toArray(new Runnable[parkedStreams.size()]);
+            parkedStreams.clear();
+        }
+        for (Runnable stream : streams) {
+            stream.run();
+        }
+    }
+
+    /**
+     * Called by NativeToJsMessageQueue when it queues more than one message for
+     * a result, as it does for each chunk of a stream.
+     */
+    void onResultQueued() {
+        queueDepth.incrementAndGet();
+    }
+
+    /**
+     * Called by NativeToJsMessageQueue when a result sent by this context leaves the queue.
+     */
+    void onResultDequeued() {
+        queueDepth.decrementAndGet();
+    }
+
+    // Must be called while holding the lock on "this".
+    private boolean takeCredit() {
+        while (credits <= 0) {
+            outOfCredits = true;
+            if (overflowPolicy == OverflowPolicy.FAIL || flowControlAborted || cancelled || !canBlock()) {
+                return false;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (finished || cancelled) {
+                return false;
+            }
+        }
+        credits -= 1;
+        return true;
+    }
+
+    private static boolean canBlock() {
+        // JS can only grant credits once these threads are free.
+        return Looper.myLooper() != Looper.getMainLooper() && Thread.currentThread() != CordovaResourceApi.jsThread;
+    }
+
+    /**
+     * Marks the call as done without sending a result, for calls that JS expects
+     * none for. Otherwise PluginManager would track it until the page changes.
+     */
+    void finishWithoutResult() {
+        synchronized (this) {
+            finished = true;
+        }
+    }
+
     public void sendPluginResult(PluginResult pluginResult) {
+        trySendPluginResult(pluginResult);
+    }
+
+    /**
+     * Same as sendPluginResult(), but returns whether the result was sent. Results
+     * are only refused once finished, or when flow control is out of credits.
+     */
+    public boolean trySendPluginResult(PluginResult pluginResult) {
+        boolean flowControlledResult;
+        Runnable timeout = null;
         synchronized (this) {
+            if (cancelled) {
+                // Nobody is listening any more, so don't bother encoding it.
+                return false;
+            }
             if (finished) {
                 Log.w(LOG_TAG, "Attempted to send a second callback for ID: " + callbackId + "\nResult was: " + pluginResult.getMessage());
-                return;
-            } else {
-                finished = !pluginResult.getKeepCallback();
+                return false;
+            }
+            flowControlledResult = flowControlled;
+            if (flowControlled && pluginResult.getKeepCallback() && !takeCredit()) {
+                Log.d(LOG_TAG, "Out of credits for ID: " + callbackId);
+                return false;
+            }
+            finished = !pluginResult.getKeepCallback();
+            if (finished && timeoutRunnable != null) {
+                timeout = timeoutRunnable;
+                timeoutRunnable = null;
+            }
+        }
+        if (timeout != null) {
+            getTimeoutHandler().removeCallbacks(timeout);
+        }
+        if (!pluginResult.getKeepCallback()) {
+            // JS won't grant credits once finished, so parked streams go on without them.
+            resumeStreams();
+        }
+        if (coalescing) {
+            pluginResult.setCoalescing(true);
+        }
+        pluginResult.epoch = epoch;
+        if (!pluginResult.getKeepCallback()) {
+            if (execStats != null) {
+                execStats.recordResult(execStartNanos, pluginResult.getStatus());
+            }
+            if (webView.pluginManager != null) {
+                webView.pluginManager.removePendingCallback(this);
+            }
+        }
+        if (flowControlledResult) {
+            if (finished) {
+                webView.pluginManager.removeFlowControlledCallback(this);
             }
+            pluginResult.flowControlOwner = this;
+            queueDepth.incrementAndGet();
         }
         webView.sendPluginResult(pluginResult, callbackId);
+        return true;
     }
 
     /**
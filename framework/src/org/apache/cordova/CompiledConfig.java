@@ -0,0 +1,379 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.XmlResourceParser;
+
+/**
+ * An immutable snapshot of res/xml/config.xml: plugins, url-filters, access
+ * origins, preferences and the start page. Config and PluginManager both read
+ * from it, so the XML is parsed at most once per process.
+ *
+ * The snapshot is also cached on disk in a compact binary form, keyed by the
+ * app's versionCode and the modification time of its APK, so that later cold
+ * starts don't parse the XML at all.
+ */
+class CompiledConfig {
+    private static final String TAG = "CompiledConfig";
+
+    private static final String CACHE_FILE_NAME = "cordova-config.bin";
+    private static final int MAGIC = 0x43444346;
+    // Bump when the binary format changes.
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Pattern SCHEME_REGEX = Pattern.compile("^[a-z-]+://");
+
+    static class Feature {
+        final String service;
+        final String pluginClass;
+        final boolean onload;
+        final boolean backgroundInit;
+        final String[] onloadAfter;
+        // The URL prefixes that this plugin handles. See CordovaPlugin.onOverrideUrlLoading().
+        final String[] urlFilters;
+
+        Feature(String service, String pluginClass, boolean onload, boolean backgroundInit, String[] onloadAfter, String[] urlFilters) {
+            this.service = service;
+            this.pluginClass = pluginClass;
+            this.onload = onload;
+            this.backgroundInit = backgroundInit;
+            this.onloadAfter = onloadAfter;
+            this.urlFilters = urlFilters;
+        }
+    }
+
+    static class Access {
+        final String origin;
+        final boolean subdomains;
+
+        Access(String origin, boolean subdomains) {
+            this.origin = origin;
+            this.subdomains = subdomains;
+        }
+    }
+
+    static class Preference {
+        // As written in config.xml. Config lower-cases it.
+        final String name;
+        final String value;
+
+        Preference(String name, String value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    final List<Feature> features;
+    final List<Access> accessEntries;
+    final List<Preference> preferences;
+    // From the deprecated <log level="..."/> tag.
+    final String logLevel;
+    // Null if config.xml has no <content src="..."/>.
+    final String startUrl;
+
+    private static CompiledConfig instance;
+
+    CompiledConfig(List<Feature> features, List<Access> accessEntries, List<Preference> preferences, String logLevel, String startUrl) {
+        this.features = Collections.unmodifiableList(features);
+        this.accessEntries = Collections.unmodifiableList(accessEntries);
+        this.preferences = Collections.unmodifiableList(preferences);
+        this.logLevel = logLevel;
+        this.startUrl = startUrl;
+    }
+
+    /**
+     * Returns the app's config, or null if it has neither a config.xml nor a cordova.xml.
+     */
+    static synchronized CompiledConfig get(Context context) {
+        if (instance != null) {
+            return instance;
+        }
+        File cacheFile = context.getCacheDir() == null ? null : new File(context.getCacheDir(), CACHE_FILE_NAME);
+        long[] key = getCacheKey(context);
+        if (cacheFile != null && key != null && cacheFile.exists()) {
+            try {
+                instance = readFrom(cacheFile, key);
+            } catch (IOException e) {
+                LOG.w(TAG, "Failed to read " + cacheFile + ", parsing config.xml instead", e);
+            }
+        }
+        if (instance == null) {
+            instance = compile(context);
+            if (instance != null && cacheFile != null && key != null) {
+                try {
+                    instance.writeTo(cacheFile, key);
+                } catch (IOException e) {
+                    LOG.w(TAG, "Failed to write " + cacheFile, e);
+                    cacheFile.delete();
+                }
+            }
+        }
+        return instance;
+    }
+
+    // Changes whenever a new APK is installed, including debug builds that keep the same versionCode.
+    private static long[] getCacheKey(Context context) {
+        try {
+            int versionCode = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).versionCode;
+            long apkTime = new File(context.getApplicationInfo().sourceDir).lastModified();
+            return new long[] { versionCode, apkTime };
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static CompiledConfig compile(Context context) {
+        int id = context.getResources().getIdentifier("config", "xml", context.getPackageName());
+        if (id == 0) {
+            id = context.getResources().getIdentifier("cordova", "xml", context.getPackageName());
+            LOG.i("CordovaLog", "config.xml missing, reverting to cordova.xml");
+        }
+        if (id == 0) {
+            LOG.i("CordovaLog", "cordova.xml missing. Ignoring...");
+            return null;
+        }
+        XmlResourceParser xml = context.getResources().getXml(id);
+        try {
+            return parse(xml);
+        } finally {
+            xml.close();
+        }
+    }
+
+    static CompiledConfig parse(XmlResourceParser xml) {
+        ArrayList<Feature> features = new ArrayList<Feature>();
+        ArrayList<Access> accessEntries = new ArrayList<Access>();
+        ArrayList<Preference> preferences = new ArrayList<Preference>();
+        String logLevel = null;
+        String startUrl = null;
+
+        String service = "", pluginClass = "";
+        boolean onload = false;
+        boolean backgroundInit = false;
+        String[] onloadAfter = new String[0];
+        ArrayList<String> urlFilters = new ArrayList<String>();
+        boolean insideFeature = false;
+
+        int eventType = -1;
+        while (eventType != XmlResourceParser.END_DOCUMENT) {
+            if (eventType == XmlResourceParser.START_TAG) {
+                String strNode = xml.getName();
+                if (strNode.equals("access")) {
+                    String origin = xml.getAttributeValue(null, "origin");
+                    String subdomains = xml.getAttributeValue(null, "subdomains");
+                    if (origin != null) {
+                        accessEntries.add(new Access(origin, (subdomains != null) && (subdomains.compareToIgnoreCase("true") == 0)));
+                    }
+                }
+                else if (strNode.equals("log")) {
+                    logLevel = xml.getAttributeValue(null, "level");
+                }
+                else if (strNode.equals("preference")) {
+                    preferences.add(new Preference(xml.getAttributeValue(null, "name"), xml.getAttributeValue(null, "value")));
+                }
+                else if (strNode.equals("content")) {
+                    String src = xml.getAttributeValue(null, "src");
+                    if (src != null) {
+                        if (SCHEME_REGEX.matcher(src).find()) {
+                            startUrl = src;
+                        } else {
+                            if (src.charAt(0) == '/') {
+                                src = src.substring(1);
+                            }
+                            startUrl = "file:///android_asset/www/" + src;
+                        }
+                    }
+                }
+                else if (insideFeature && strNode.equals("url-filter")) {
+                    urlFilters.add(xml.getAttributeValue(null, "value"));
+                }
+                else if (strNode.equals("feature")) {
+                    insideFeature = true;
+                    service = xml.getAttributeValue(null, "name");
+                }
+                else if (insideFeature && strNode.equals("param")) {
+                    String paramType = xml.getAttributeValue(null, "name");
+                    String value = xml.getAttributeValue(null, "value");
+                    if (paramType.equals("service")) // check if it is using the older service param
+                        service = value;
+                    else if (paramType.equals("package") || paramType.equals("android-package"))
+                        pluginClass = value;
+                    else if (paramType.equals("onload"))
+                        onload = "true".equals(value);
+                    else if (paramType.equals("background-init"))
+                        backgroundInit = "true".equals(value);
+                    else if (paramType.equals("onload-after") && value != null)
+                        onloadAfter = value.trim().split("\\s*,\\s*");
+                }
+            }
+            else if (eventType == XmlResourceParser.END_TAG) {
+                String strNode = xml.getName();
+                if (strNode.equals("feature") || strNode.equals("plugin")) {
+                    features.add(new Feature(service, pluginClass, onload, backgroundInit, onloadAfter,
+                            urlFilters.toArray(new String[urlFilters.size()])));
+                    service = "";
+                    pluginClass = "";
+                    onload = false;
+                    backgroundInit = false;
+                    onloadAfter = new String[0];
+                    urlFilters.clear();
+                    insideFeature = false;
+                }
+            }
+            try {
+                eventType = xml.next();
+            } catch (XmlPullParserException e) {
+                e.printStackTrace();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return new CompiledConfig(features, accessEntries, preferences, logLevel, startUrl);
+    }
+
+    /**
+     * Returns null if the file was written for a different key or format, and
+     * throws if it is corrupt.
+     */
+    static CompiledConfig readFrom(File file, long[] key) throws IOException {
+        // Every list element takes at least a byte, so no count can exceed this.
+        long maxCount = file.length();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != key[0] || in.readLong() != key[1]) {
+                // Written by a different version of the app.
+                return null;
+            }
+            int numFeatures = readCount(in, maxCount);
+            ArrayList<Feature> features = new ArrayList<Feature>(numFeatures);
+            for (int i = 0; i < numFeatures; ++i) {
+                features.add(new Feature(readString(in), readString(in), in.readBoolean(), in.readBoolean(),
+                        readStringArray(in, maxCount), readStringArray(in, maxCount)));
+            }
+            int numAccessEntries = readCount(in, maxCount);
+            ArrayList<Access> accessEntries = new ArrayList<Access>(numAccessEntries);
+            for (int i = 0; i < numAccessEntries; ++i) {
+                accessEntries.add(new Access(readString(in), in.readBoolean()));
+            }
+            int numPreferences = readCount(in, maxCount);
+            ArrayList<Preference> preferences = new ArrayList<Preference>(numPreferences);
+            for (int i = 0; i < numPreferences; ++i) {
+                preferences.add(new Preference(readString(in), readString(in)));
+            }
+            String logLevel = readString(in);
+            String startUrl = readString(in);
+            return new CompiledConfig(features, accessEntries, preferences, logLevel, startUrl);
+        } finally {
+            in.close();
+        }
+    }
+
+    void writeTo(File file, long[] key) throws IOException {
+        // Written to a temp file first so that a crash can't leave a truncated cache behind.
+        File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(key[0]);
+            out.writeLong(key[1]);
+            out.writeInt(features.size());
+            for (Feature feature : features) {
+                writeString(out, feature.service);
+                writeString(out, feature.pluginClass);
+                out.writeBoolean(feature.onload);
+                out.writeBoolean(feature.backgroundInit);
+                writeStringArray(out, feature.onloadAfter);
+                writeStringArray(out, feature.urlFilters);
+            }
+            out.writeInt(accessEntries.size());
+            for (Access access : accessEntries) {
+                writeString(out, access.origin);
+                out.writeBoolean(access.subdomains);
+            }
+            out.writeInt(preferences.size());
+            for (Preference preference : preferences) {
+                writeString(out, preference.name);
+                writeString(out, preference.value);
+            }
+            writeString(out, logLevel);
+            writeString(out, startUrl);
+        } finally {
+            out.close();
+        }
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            throw new IOException("Failed to rename " + tmpFile);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStringArray(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String s : values) {
+            writeString(out, s);
+        }
+    }
+
+    private static String[] readStringArray(DataInputStream in, long maxCount) throws IOException {
+        String[] ret = new String[readCount(in, maxCount)];
+        for (int i = 0; i < ret.length; ++i) {
+            ret[i] = readString(in);
+        }
+        return ret;
+    }
+
+    // Guards against allocating a huge list for a corrupt count.
+    private static int readCount(DataInputStream in, long maxCount) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > maxCount) {
+            throw new IOException("Corrupt count: " + count);
+        }
+        return count;
+    }
+}
@@ -19,20 +19,12 @@
 
 package org.apache.cordova;
 
-import java.io.IOException;
-
 import java.util.Locale;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import org.apache.cordova.LOG;
 
-import org.xmlpull.v1.XmlPullParserException;
-
 import android.app.Activity;
 
-import android.content.res.XmlResourceParser;
 import android.graphics.Color;
 
 import android.util.Log;
@@ -68,13 +60,8 @@ public class Config {
             return;
         }
 
-        int id = action.getResources().getIdentifier("config", "xml", action.getPackageName());
-        if (id == 0) {
-            id = action.getResources().getIdentifier("cordova", "xml", action.getPackageName());
-            LOG.i("CordovaLog", "config.xml missing, reverting to cordova.xml");
-        }
-        if (id == 0) {
-            LOG.i("CordovaLog", "cordova.xml missing. Ignoring...");
+        CompiledConfig config = CompiledConfig.get(action);
+        if (config == null) {
             return;
         }
 
@@ -83,115 +70,102 @@ public class Config {
         whitelist.addWhiteListEntry("content:///*", false);
         whitelist.addWhiteListEntry("data:*", false);
 
-        XmlResourceParser xml = action.getResources().getXml(id);
-        int eventType = -1;
-        while (eventType != XmlResourceParser.END_DOCUMENT) {
-            if (eventType == XmlResourceParser.START_TAG) {
-                String strNode = xml.getName();
-
-                if (strNode.equals("access")) {
-                    String origin = xml.getAttributeValue(null, "origin");
-                    String subdomains = xml.getAttributeValue(null, "subdomains");
-                    if (origin != null) {
-                        whitelist.addWhiteListEntry(origin, (subdomains != null) && (subdomains.compareToIgnoreCase("true") == 0));
-                    }
-                }
-                else if (strNode.equals("log")) {
-                    String level = xml.getAttributeValue(null, "level");
-                    Log.d(TAG, "The <log> tags is deprecated. Use <preference name=\"loglevel\" value=\"" + level + "\"/> instead.");
-                    if (level != null) {
-                        LOG.setLogLevel(level);
-                    }
-                }
-                else if (strNode.equals("preference")) {
-                    String name = xml.getAttributeValue(null, "name").toLowerCase(Locale.getDefault());
-                    /* Java 1.6 does not support switch-based strings
-                       Java 7 does, but we're using Dalvik, which is apparently not Java.
-                       Since we're reading XML, this has to be an ugly if/else.
-                       
-                       Also, due to cast issues, each of them has to call their separate putExtra!  
-                       Wheee!!! Isn't Java FUN!?!?!?
-                       
-                       Note: We should probably pass in the classname for the variable splash on splashscreen!
-                       */
-                    if (name.equalsIgnoreCase("LogLevel")) {
-                        String level = xml.getAttributeValue(null, "value");
-                        LOG.setLogLevel(level);
-                    } else if (name.equalsIgnoreCase("SplashScreen")) {
-                        String value = xml.getAttributeValue(null, "value");
-                        int resource = 0;
-                        if (value == null)
-                        {
-                            value = "splash";
-                        }
-                        resource = action.getResources().getIdentifier(value, "drawable", action.getPackageName());
-                        
-                        action.getIntent().putExtra(name, resource);
-                    }
-                    else if(name.equalsIgnoreCase("BackgroundColor")) {
-                        int value = xml.getAttributeIntValue(null, "value", Color.BLACK);
-                        action.getIntent().putExtra(name, value);
-                    }
-                    else if(name.equalsIgnoreCase("LoadUrlTimeoutValue")) {
-                        int value = xml.getAttributeIntValue(null, "value", 20000);
-                        action.getIntent().putExtra(name, value);
-                    }
-                    else if(name.equalsIgnoreCase("SplashScreenDelay")) {
-                        int value = xml.getAttributeIntValue(null, "value", 3000);
-                        action.getIntent().putExtra(name, value);
-                    }
-                    else if(name.equalsIgnoreCase("KeepRunning"))
-                    {
-                        boolean value = xml.getAttributeValue(null, "value").equals("true");
-                        action.getIntent().putExtra(name, value);
-                    }
-                    else if(name.equalsIgnoreCase("InAppBrowserStorageEnabled"))
-                    {
-                        boolean value = xml.getAttributeValue(null, "value").equals("true");
-                        action.getIntent().putExtra(name, value);
-                    }
-                    else if(name.equalsIgnoreCase("DisallowOverscroll"))
-                    {
-                        boolean value = xml.getAttributeValue(null, "value").equals("true");
-                        action.getIntent().putExtra(name, value);
-                    }
-                    else
-                    {
-                        String value = xml.getAttributeValue(null, "value");
-                        action.getIntent().putExtra(name, value);
-                    }
-                    /*
-                    LOG.i("CordovaLog", "Found preference for %s=%s", name, value);
-                     */
-                }
-                else if (strNode.equals("content")) {
-                    String src = xml.getAttributeValue(null, "src");
-
-                    LOG.i("CordovaLog", "Found start page location: %s", src);
-
-                    if (src != null) {
-                        Pattern schemeRegex = Pattern.compile("^[a-z-]+://");
-                        Matcher matcher = schemeRegex.matcher(src);
-                        if (matcher.find()) {
-                            startUrl = src;
-                        } else {
-                            if (src.charAt(0) == '/') {
-                                src = src.substring(1);
-                            }
-                            startUrl = "file:///android_asset/www/" + src;
-                        }
-                    }
-                }
+        for (CompiledConfig.Access access : config.accessEntries) {
+            whitelist.addWhiteListEntry(access.origin, access.subdomains);
+        }
 
-            }
+        if (config.logLevel != null) {
+            Log.d(TAG, "The <log> tags is deprecated. Use <preference name=\"loglevel\" value=\"" + config.logLevel + "\"/> instead.");
+            LOG.setLogLevel(config.logLevel);
+        }
 
-            try {
-                eventType = xml.next();
-            } catch (XmlPullParserException e) {
-                e.printStackTrace();
-            } catch (IOException e) {
-                e.printStackTrace();
+        for (CompiledConfig.Preference preference : config.preferences) {
+            String name = preference.name.toLowerCase(Locale.getDefault());
+            String value = preference.value;
+            /* Java 1.6 does not support switch-based strings
+               Java 7 does, but we're using Dalvik, which is apparently not Java.
+               Since we're reading XML, this has to be an ugly if/else.
+               
+               Also, due to cast issues, each of them has to call their separate putExtra!  
+               Wheee!!! Isn't Java FUN!?!?!?
+               
+               Note: We should probably pass in the classname for the variable splash on splashscreen!
+               */
+            if (name.equalsIgnoreCase("LogLevel")) {
+                LOG.setLogLevel(value);
+            } else if (name.equalsIgnoreCase("SplashScreen")) {
+                int resource = 0;
+                if (value == null)
+                {
+                    value = "splash";
+                }
+                resource = action.getResources().getIdentifier(value, "drawable", action.getPackageName());
+                
+                action.getIntent().putExtra(name, resource);
+            }
+            else if(name.equalsIgnoreCase("BackgroundColor")) {
+                action.getIntent().putExtra(name, convertValueToInt(value, Color.BLACK));
+            }
+            else if(name.equalsIgnoreCase("LoadUrlTimeoutValue")) {
+                action.getIntent().putExtra(name, convertValueToInt(value, 20000));
+            }
+            else if(name.equalsIgnoreCase("SplashScreenDelay")) {
+                action.getIntent().putExtra(name, convertValueToInt(value, 3000));
             }
+            else if(name.equalsIgnoreCase("KeepRunning"))
+            {
+                action.getIntent().putExtra(name, "true".equals(value));
+            }
+            else if(name.equalsIgnoreCase("InAppBrowserStorageEnabled"))
+            {
+                action.getIntent().putExtra(name, "true".equals(value));
+            }
+            else if(name.equalsIgnoreCase("DisallowOverscroll"))
+            {
+                action.getIntent().putExtra(name, "true".equals(value));
+            }
+            else
+            {
+                action.getIntent().putExtra(name, value);
+            }
+        }
+
+        if (config.startUrl != null) {
+            LOG.i("CordovaLog", "Found start page location: %s", config.startUrl);
+            startUrl = config.startUrl;
+        }
+    }
+
+    /**
+     * Parses an int the way XmlResourceParser.getAttributeIntValue() does, which
+     * accepts hex ("0x" or "#") and octal as well as decimal.
+     */
+    private static int convertValueToInt(String value, int defaultValue) {
+        if (value == null || value.length() == 0) {
+            return defaultValue;
+        }
+        int sign = 1;
+        int index = 0;
+        int base = 10;
+        if (value.charAt(0) == '-') {
+            sign = -1;
+            index++;
+        }
+        if (value.startsWith("0x", index) || value.startsWith("0X", index)) {
+            index += 2;
+            base = 16;
+        } else if (value.startsWith("#", index)) {
+            index++;
+            base = 16;
+        } else if (value.startsWith("0", index) && value.length() > index + 1) {
+            index++;
+            base = 8;
+        }
+        try {
+            return (int) Long.parseLong(value.substring(index), base) * sign;
+        } catch (NumberFormatException e) {
+            LOG.w(TAG, "Invalid number in config.xml: " + value);
+            return defaultValue;
         }
     }
 
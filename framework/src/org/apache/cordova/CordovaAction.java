@@ -0,0 +1,47 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a public method of a CordovaPlugin as the handler for an action, so
+ * that execute() doesn't need to compare the action against every name. The
+ * method must take (CordovaArgs, CallbackContext), may throw JSONException,
+ * and returns either void or a boolean saying whether the action was valid.
+ *
+ *     &#64;CordovaAction
+ *     public void getInfo(CordovaArgs args, CallbackContext callbackContext) throws JSONException {
+ *
+ * Annotated actions take precedence over execute(). Annotations are also found
+ * on superclasses, and the most derived one wins for each action name. An
+ * override, annotated or not, handles its superclass's action, since the
+ * method is called virtually.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CordovaAction {
+    /**
+     * The action name. Defaults to the method's name.
+     */
+    String value() default "";
+}
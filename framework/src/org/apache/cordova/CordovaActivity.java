@@ -21,7 +21,6 @@ package org.apache.cordova;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import org.apache.cordova.CordovaInterface;
 import org.apache.cordova.CordovaPlugin;
@@ -43,6 +42,7 @@ import android.media.AudioManager;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Process;
 import android.util.Log;
 import android.view.Display;
 import android.view.KeyEvent;
@@ -117,6 +117,17 @@ import android.widget.LinearLayout;
  *      // Enable app to keep running in background. (Boolean - default=true)
  *      super.setBooleanProperty("keepRunning", false);
  *
+ *      // Thread pools returned by getThreadPool() and getCpuThreadPool(). Sizes
+ *      // are the most threads that can run at once, and the most tasks that can
+ *      // wait for one. Overflow is what happens to tasks beyond that: callerRuns,
+ *      // abort or discardOldest. (Integer - default=16, number of CPUs, 256;
+ *      // String - default=callerRuns) Usually set with the config.xml
+ *      // preferences of the same names.
+ *      super.setIntegerProperty("ThreadPoolIoSize", 16);
+ *      super.setIntegerProperty("ThreadPoolCpuSize", 2);
+ *      super.setIntegerProperty("ThreadPoolQueueSize", 256);
+ *      super.setStringProperty("ThreadPoolOverflow", "callerRuns");
+ *
  * Cordova.xml configuration:
  *      Cordova uses a configuration file at res/xml/cordova.xml to specify the following settings.
  *
@@ -136,7 +147,9 @@ public class CordovaActivity extends Activity implements CordovaInterface {
     protected LinearLayout root;
     protected boolean cancelLoadUrl = false;
     protected ProgressDialog spinnerDialog = null;
-    private final ExecutorService threadPool = Executors.newCachedThreadPool();
+    // Created when first used, so that config.xml preferences can size them.
+    private InstrumentedThreadPoolExecutor threadPool;
+    private InstrumentedThreadPoolExecutor cpuThreadPool;
 
 
     // The initial URL for our app
@@ -1235,9 +1248,34 @@ public class CordovaActivity extends Activity implements CordovaInterface {
         return null;
     }
 
-    public ExecutorService getThreadPool() {
+    public synchronized ExecutorService getThreadPool() {
+        if (threadPool == null) {
+            threadPool = createThreadPool("cordova-io", this.getIntegerProperty("ThreadPoolIoSize", 16));
+        }
         return threadPool;
     }
+
+    /**
+     * Returns the pool for CPU-bound background work. Plugins should go through
+     * CordovaThreadPools.getCpuThreadPool(), which also works in apps that
+     * don't use CordovaActivity.
+     */
+    public synchronized ExecutorService getCpuThreadPool() {
+        if (cpuThreadPool == null) {
+            int numCpus = Runtime.getRuntime().availableProcessors();
+            cpuThreadPool = createThreadPool("cordova-cpu", this.getIntegerProperty("ThreadPoolCpuSize", numCpus));
+        }
+        return cpuThreadPool;
+    }
+
+    private InstrumentedThreadPoolExecutor createThreadPool(String name, int maxThreads) {
+        int queueSize = this.getIntegerProperty("ThreadPoolQueueSize", 256);
+        InstrumentedThreadPoolExecutor.OverflowPolicy policy = InstrumentedThreadPoolExecutor.OverflowPolicy.fromPreference(
+                this.getStringProperty("ThreadPoolOverflow", null), InstrumentedThreadPoolExecutor.OverflowPolicy.CALLER_RUNS);
+        // Background priority keeps plugin work from making the UI janky.
+        return new InstrumentedThreadPoolExecutor(name, Math.max(1, maxThreads), Math.max(1, queueSize),
+                Process.THREAD_PRIORITY_BACKGROUND, policy);
+    }
     
     protected void onSaveInstanceState(Bundle outState)
     {
@@ -31,6 +31,10 @@ public class CordovaArgs {
         this.baseArgs = args;
     }
 
+    // For subclasses that don't keep the arguments as a JSONArray (see LazyCordovaArgs).
+    protected CordovaArgs() {
+    }
+
 
     // Pass through the basics to the base args.
     public Object get(int index) throws JSONException {
@@ -105,7 +109,7 @@ public class CordovaArgs {
 
     // The interesting custom helpers.
     public byte[] getArrayBuffer(int index) throws JSONException {
-        String encoded = baseArgs.getString(index);
+        String encoded = getString(index);
         return Base64.decode(encoded, Base64.DEFAULT);
     }
 }
@@ -214,9 +214,31 @@ public class CordovaChromeClient extends AmazonWebChromeClient {
             reqOk = true;
         }
 
+        // Calling PluginManager.exec() to call a native service using
+        // prompt(this.stringify(args), "gap|"+service+"|"+action+"|"+callbackId);
+        // This is the format used unless service or action contain a "|".
+        if (reqOk && defaultValue != null && defaultValue.startsWith("gap|")) {
+            int actionStart = defaultValue.indexOf('|', 4) + 1;
+            int callbackIdStart = actionStart == 0 ? 0 : defaultValue.indexOf('|', actionStart) + 1;
+            if (callbackIdStart == 0) {
+                LOG.e(LOG_TAG, "Malformed exec() prompt: " + defaultValue);
+                return false;
+            }
+            String service = defaultValue.substring(4, actionStart - 1);
+            String action = defaultValue.substring(actionStart, callbackIdStart - 1);
+            String callbackId = defaultValue.substring(callbackIdStart);
+            try {
+                String r = this.appView.exposedJsApi.exec(service, action, callbackId, message);
+                result.confirm(r == null ? "" : r);
+            } catch (JSONException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+
         // Calling PluginManager.exec() to call a native service using 
         // prompt(this.stringify(args), "gap:"+this.stringify([service, action, callbackId, true]));
-        if (reqOk && defaultValue != null && defaultValue.length() > 3 && defaultValue.substring(0, 4).equals("gap:")) {
+        else if (reqOk && defaultValue != null && defaultValue.startsWith("gap:")) {
             JSONArray array;
             try {
                 array = new JSONArray(defaultValue.substring(4));
@@ -231,6 +253,25 @@ public class CordovaChromeClient extends AmazonWebChromeClient {
             }
         }
 
+        // Calling PluginManager.exec() for several services at once using
+        // prompt(this.stringify([[service, action, callbackId, argsJson], ...]), "gap_batch:");
+        else if (reqOk && defaultValue != null && defaultValue.equals("gap_batch:")) {
+            try {
+                String r = this.appView.exposedJsApi.execBatch(message);
+                result.confirm(r == null ? "" : r);
+            } catch (JSONException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+
+        // Appending binary data to an upload using
+        // prompt(data, "gap_upload:" + handle);
+        else if (reqOk && defaultValue != null && defaultValue.startsWith("gap_upload:")) {
+            String r = this.appView.exposedJsApi.upload(defaultValue.substring(11), message);
+            result.confirm(r);
+        }
+
         // Sets the native->JS bridge mode. 
         else if (reqOk && defaultValue != null && defaultValue.equals("gap_bridge_mode:")) {
         	try {
@@ -18,6 +18,9 @@
 */
 package org.apache.cordova;
 
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.apache.cordova.CordovaArgs;
 import org.apache.cordova.CordovaWebView;
 import org.apache.cordova.CordovaInterface;
@@ -29,13 +32,30 @@ import android.content.Intent;
 import android.net.Uri;
 
 /**
- * Plugins must extend this class and override one of the execute methods.
+ * Plugins must extend this class and override one of the execute methods, or mark
+ * their action methods with @CordovaAction.
  */
 public class CordovaPlugin {
     public String id;
     public CordovaWebView webView;					// WebView object
     public CordovaInterface cordova;
 
+    private static final ConcurrentHashMap<Class<?>, Boolean> overridesJSONArrayExecute = new ConcurrentHashMap<Class<?>, Boolean>();
+
+    /**
+     * Where PluginManager runs execute() for an action. See getExecutionThread().
+     */
+    public enum ExecutionThread {
+        /** On the thread that called exec() (usually the WebCore thread). */
+        INLINE,
+        /** On the UI thread. */
+        UI,
+        /** On cordova.getThreadPool(), possibly at the same time as other actions. */
+        BACKGROUND,
+        /** On cordova.getThreadPool(), one at a time and in order with this plugin's other SERIAL actions. */
+        SERIAL
+    }
+
     /**
      * @param cordova The context of the main Activity.
      * @param webView The associated CordovaWebView.
@@ -46,10 +66,23 @@ public class CordovaPlugin {
         this.webView = webView;
     }
 
+    /**
+     * Returns the thread that execute() should be called on for the given action.
+     * Override this instead of switching threads within execute(). Results of
+     * actions that don't run INLINE are always sent asynchronously.
+     *
+     * @param action          The action to execute.
+     * @return                Defaults to INLINE.
+     */
+    public ExecutionThread getExecutionThread(String action) {
+        return ExecutionThread.INLINE;
+    }
+
     /**
      * Executes the request.
      *
-     * This method is called from the WebView thread. To do a non-trivial amount of work, use:
+     * This method is called on the thread chosen by getExecutionThread(), which by default
+     * is the WebView thread. To do a non-trivial amount of work, use:
      *     cordova.getThreadPool().execute(runnable);
      *
      * To run on the UI thread, use:
@@ -61,14 +94,35 @@ public class CordovaPlugin {
      * @return                Whether the action was valid.
      */
     public boolean execute(String action, String rawArgs, CallbackContext callbackContext) throws JSONException {
-        JSONArray args = new JSONArray(rawArgs);
-        return execute(action, args, callbackContext);
+        if (overridesJSONArrayExecute()) {
+            JSONArray args = new JSONArray(rawArgs);
+            return execute(action, args, callbackContext);
+        }
+        // Only the arguments that the plugin reads get parsed.
+        return execute(action, new LazyCordovaArgs(rawArgs), callbackContext);
+    }
+
+    // Whether this plugin needs the JSONArray form of the arguments.
+    private boolean overridesJSONArrayExecute() {
+        Class<?> c = getClass();
+        Boolean ret = overridesJSONArrayExecute.get(c);
+        if (ret == null) {
+            try {
+                Method m = c.getMethod("execute", String.class, JSONArray.class, CallbackContext.class);
+                ret = m.getDeclaringClass() != CordovaPlugin.class;
+            } catch (NoSuchMethodException e) {
+                ret = true;
+            }
+            overridesJSONArrayExecute.put(c, ret);
+        }
+        return ret;
     }
 
     /**
      * Executes the request.
      *
-     * This method is called from the WebView thread. To do a non-trivial amount of work, use:
+     * This method is called on the thread chosen by getExecutionThread(), which by default
+     * is the WebView thread. To do a non-trivial amount of work, use:
      *     cordova.getThreadPool().execute(runnable);
      *
      * To run on the UI thread, use:
@@ -87,7 +141,8 @@ public class CordovaPlugin {
     /**
      * Executes the request.
      *
-     * This method is called from the WebView thread. To do a non-trivial amount of work, use:
+     * This method is called on the thread chosen by getExecutionThread(), which by default
+     * is the WebView thread. To do a non-trivial amount of work, use:
      *     cordova.getThreadPool().execute(runnable);
      *
      * To run on the UI thread, use:
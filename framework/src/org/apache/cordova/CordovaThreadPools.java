@@ -0,0 +1,45 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Looks up the thread pools that plugins can use. CordovaInterface only
+ * promises getThreadPool(), so that apps that implement it themselves keep
+ * working; the pool for CPU-bound work comes from CordovaActivity when there
+ * is one.
+ */
+public final class CordovaThreadPools {
+    private CordovaThreadPools() {
+    }
+
+    /**
+     * Returns a shared thread pool for background tasks that keep a CPU busy
+     * (e.g. encoding or parsing). It has no more threads than there are CPUs.
+     * Falls back to cordova.getThreadPool() if the CordovaInterface isn't a
+     * CordovaActivity.
+     */
+    public static ExecutorService getCpuThreadPool(CordovaInterface cordova) {
+        if (cordova instanceof CordovaActivity) {
+            return ((CordovaActivity) cordova).getCpuThreadPool();
+        }
+        return cordova.getThreadPool();
+    }
+}
@@ -259,13 +259,14 @@ public class CordovaWebViewClient extends AmazonWebViewClient {
     public void onPageStarted(AmazonWebView view, String url, Bitmap favicon) {
 
         // Flush stale messages.
-        this.appView.jsMessageQueue.reset();
+        boolean pageAlreadyStarted = this.appView.jsMessageQueue.reset(url);
 
         // Broadcast message that page has loaded
         this.appView.postMessage("onPageStarted", url);
 
         // Notify all plugins of the navigation, so they can clean up if necessary.
-        if (this.appView.pluginManager != null) {
+        // If the page's JS has already started, then this was done when it did.
+        if (this.appView.pluginManager != null && !pageAlreadyStarted) {
             this.appView.pluginManager.onReset();
         }
     }
@@ -0,0 +1,127 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Timings and failure counts of exec() calls, kept separately for each
+ * service.action. Recording doesn't allocate once an action has been seen.
+ */
+public class ExecStats {
+    /**
+     * The stats of a single service.action.
+     */
+    static class ActionStats {
+        // Time spent in execute() on the calling thread.
+        final Histogram executeMicros = new Histogram();
+        // Time from the start of execute() until the final result was sent.
+        final Histogram completionMicros = new Histogram();
+        final AtomicLong errorCount = new AtomicLong();
+        final AtomicLong invalidActionCount = new AtomicLong();
+
+        void recordResult(long startNanos, int status) {
+            completionMicros.record((System.nanoTime() - startNanos) / 1000);
+            if (status != PluginResult.Status.OK.ordinal() && status != PluginResult.Status.NO_RESULT.ordinal()) {
+                errorCount.incrementAndGet();
+            }
+        }
+
+        JSONObject toJSON() throws JSONException {
+            JSONObject ret = new JSONObject();
+            ret.put("executeMicros", executeMicros.toJSON());
+            ret.put("completionMicros", completionMicros.toJSON());
+            ret.put("errorCount", errorCount.get());
+            ret.put("invalidActionCount", invalidActionCount.get());
+            return ret;
+        }
+    }
+
+    // Action names come from JS, so past this many per service the rest share one entry.
+    static final int MAX_ACTIONS_PER_SERVICE = 64;
+    static final String OTHER_ACTIONS = "(other)";
+
+    // Keyed by service and then by action, so that lookups don't need to build a "service.action" string.
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, ActionStats>> services = new ConcurrentHashMap<String, ConcurrentHashMap<String, ActionStats>>();
+
+    ExecStats() {
+    }
+
+    ActionStats get(String service, String action) {
+        ConcurrentHashMap<String, ActionStats> actions = services.get(service);
+        if (actions == null) {
+            actions = new ConcurrentHashMap<String, ActionStats>();
+            ConcurrentHashMap<String, ActionStats> existing = services.putIfAbsent(service, actions);
+            if (existing != null) {
+                actions = existing;
+            }
+        }
+        ActionStats ret = actions.get(action);
+        if (ret == null) {
+            if (actions.size() >= MAX_ACTIONS_PER_SERVICE) {
+                action = OTHER_ACTIONS;
+                ret = actions.get(action);
+                if (ret != null) {
+                    return ret;
+                }
+            }
+            ret = new ActionStats();
+            ActionStats existing = actions.putIfAbsent(action, ret);
+            if (existing != null) {
+                ret = existing;
+            }
+        }
+        return ret;
+    }
+
+    public void reset() {
+        services.clear();
+    }
+
+    /**
+     * Returns stats keyed by "service.action".
+     */
+    public JSONObject toJSON() throws JSONException {
+        JSONObject ret = new JSONObject();
+        for (Map.Entry<String, ConcurrentHashMap<String, ActionStats>> service : services.entrySet()) {
+            for (Map.Entry<String, ActionStats> action : service.getValue().entrySet()) {
+                ret.put(service.getKey() + "." + action.getKey(), action.getValue().toJSON());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Writes the stats to the given file as JSON.
+     */
+    public void writeTo(File file) throws IOException {
+        try {
+            StatsFiles.write(file, toJSON());
+        } catch (JSONException e) {
+            throw new IOException(e.toString());
+        }
+    }
+}
@@ -18,8 +18,10 @@
 */
 package org.apache.cordova;
 
+import android.util.Log;
 import android.webkit.JavascriptInterface;
 import org.apache.cordova.PluginManager;
+import org.json.JSONArray;
 import org.json.JSONException;
 
 /**
@@ -28,6 +30,7 @@ import org.json.JSONException;
  * cordova-js/lib/android/plugin/android/promptbasednativeapi.js
  */
 /* package */ class ExposedJsApi {
+    private static final String LOG_TAG = "ExposedJsApi";
     
     private PluginManager pluginManager;
     private NativeToJsMessageQueue jsMessageQueue;
@@ -52,7 +55,7 @@ import org.json.JSONException;
             
             pluginManager.exec(service, action, callbackId, arguments);
             String ret = "";
-            if (!NativeToJsMessageQueue.DISABLE_EXEC_CHAINING) {
+            if (!jsMessageQueue.getExecChainingDisabled()) {
                 ret = jsMessageQueue.popAndEncode(false);
             }
             return ret;
@@ -64,6 +67,55 @@ import org.json.JSONException;
         }
     }
     
+    /**
+     * Runs several exec() calls with a single crossing of the bridge. batch is a
+     * JSON array of [service, action, callbackId, argumentsJson] arrays, which
+     * are run in order. Returns the messages produced by all of them.
+     */
+    @JavascriptInterface
+    public String execBatch(String batch) throws JSONException {
+        if (batch == null) {
+            return "@Null arguments.";
+        }
+        JSONArray calls = new JSONArray(batch);
+
+        jsMessageQueue.setPaused(true);
+        try {
+            CordovaResourceApi.jsThread = Thread.currentThread();
+
+            for (int i = 0; i < calls.length(); ++i) {
+                JSONArray call = calls.getJSONArray(i);
+                try {
+                    pluginManager.exec(call.getString(0), call.getString(1), call.getString(2), call.getString(3));
+                } catch (Throwable e) {
+                    // One bad call shouldn't stop the rest of the batch.
+                    Log.e(LOG_TAG, "Batched exec() failed: " + call.optString(0) + "." + call.optString(1), e);
+                }
+            }
+            String ret = "";
+            if (!jsMessageQueue.getExecChainingDisabled()) {
+                ret = jsMessageQueue.popAndEncode(false);
+            }
+            return ret;
+        } finally {
+            jsMessageQueue.setPaused(false);
+        }
+    }
+    
+    /**
+     * Appends a chunk of binary data to an upload, starting a new one if handle
+     * is empty. Each char of data holds one byte. Returns the upload's handle,
+     * which JS passes to plugins in place of the data. See UploadStore.
+     */
+    @JavascriptInterface
+    public String upload(String handle, String data) {
+        if (data == null) {
+            return "@Null arguments.";
+        }
+        String ret = pluginManager.getUploadStore().append(handle, data);
+        return ret == null ? "" : ret;
+    }
+
     @JavascriptInterface
     public void setNativeToJsBridgeMode(int value) {
         jsMessageQueue.setBridgeMode(value);
@@ -0,0 +1,99 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A histogram of non-negative values with power-of-two buckets. Recording a
+ * value doesn't allocate, and percentiles are accurate to within a factor of two.
+ */
+public class Histogram {
+    // Bucket 0 holds 0, and bucket i holds values in [2^(i-1), 2^i).
+    private static final int NUM_BUCKETS = 64;
+
+    private final long[] buckets = new long[NUM_BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public synchronized void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets[64 - Long.numberOfLeadingZeros(value)] += 1;
+        count += 1;
+        sum += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns an upper bound for the given percentile (between 0 and 1), or 0 if empty.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * percentile);
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; ++i) {
+            seen += buckets[i];
+            if (seen >= target && buckets[i] > 0) {
+                long upperBound = i == 0 ? 0 : (1L << i) - 1;
+                return Math.min(upperBound, max);
+            }
+        }
+        return max;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < NUM_BUCKETS; ++i) {
+            buckets[i] = 0;
+        }
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    public synchronized JSONObject toJSON() throws JSONException {
+        JSONObject ret = new JSONObject();
+        ret.put("count", count);
+        if (count > 0) {
+            ret.put("min", min);
+            ret.put("max", max);
+            ret.put("mean", sum / count);
+            ret.put("p50", getPercentile(0.5));
+            ret.put("p90", getPercentile(0.9));
+            ret.put("p99", getPercentile(0.99));
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.os.Build;
+import android.os.Process;
+
+/**
+ * A thread pool with a bounded number of threads and a bounded queue, whose
+ * threads are named and run at a lower priority than the UI thread. It keeps
+ * track of how long tasks wait in the queue and how long they take to run.
+ *
+ * The bound and the OverflowPolicy only apply to tasks passed to execute().
+ * Tasks that the framework itself depends on (see executeReliably()) are
+ * always queued: they are never rejected, dropped, or run on the caller.
+ */
+public class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * What happens to a task passed to execute() when every thread is busy and
+     * the queue is full.
+     */
+    public enum OverflowPolicy {
+        /** Run the task on the thread that submitted it. No work is lost, but the caller slows down. */
+        CALLER_RUNS,
+        /** Throw a RejectedExecutionException. */
+        ABORT,
+        /** Drop the oldest queued task that was passed to execute() to make room. */
+        DISCARD_OLDEST;
+
+        /**
+         * Parses the value of a preference such as "callerRuns". Returns defaultValue if it isn't recognized.
+         */
+        public static OverflowPolicy fromPreference(String value, OverflowPolicy defaultValue) {
+            if ("callerRuns".equalsIgnoreCase(value)) {
+                return CALLER_RUNS;
+            } else if ("abort".equalsIgnoreCase(value)) {
+                return ABORT;
+            } else if ("discardOldest".equalsIgnoreCase(value)) {
+                return DISCARD_OLDEST;
+            }
+            return defaultValue;
+        }
+    }
+
+    private final String name;
+    private final Histogram queueLatencyMicros = new Histogram();
+    private final Histogram runTimeMicros = new Histogram();
+    private final AtomicInteger rejectedCount;
+
+    /**
+     * @param name              Prefix for thread names, and the name used in stats.
+     * @param maxThreads        The most threads that can run at once.
+     * @param queueCapacity     The most tasks that can wait for a thread.
+     * @param threadPriority    A android.os.Process.THREAD_PRIORITY_* value.
+     * @param policy            What to do with tasks that don't fit.
+     */
+    public InstrumentedThreadPoolExecutor(String name, int maxThreads, int queueCapacity, int threadPriority, OverflowPolicy policy) {
+        super(maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new TaskQueue(queueCapacity),
+                new PriorityThreadFactory(name, threadPriority),
+                new CountingRejectedExecutionHandler(policy));
+        this.name = name;
+        this.rejectedCount = ((CountingRejectedExecutionHandler) getRejectedExecutionHandler()).count;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+            // Don't keep idle threads around.
+            allowCoreThreadTimeOut(true);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        // The DISCARD_OLDEST policy resubmits tasks that are already wrapped.
+        super.execute(command instanceof TimedRunnable ? command : new TimedRunnable(command, false));
+    }
+
+    /**
+     * Runs a task that something is going to wait on, such as the next step of
+     * plugin startup or of a SerialExecutor. Losing it, or running it on the
+     * calling thread (often the UI or WebCore thread, possibly holding a lock),
+     * would stall or deadlock its waiter. On an InstrumentedThreadPoolExecutor
+     * the task is queued even if the queue is full; any other Executor just
+     * gets execute().
+     */
+    static void executeReliably(Executor executor, Runnable task) {
+        if (executor instanceof InstrumentedThreadPoolExecutor) {
+            ((InstrumentedThreadPoolExecutor) executor).executeReliably(task);
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    private void executeReliably(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        super.execute(new TimedRunnable(task, true));
+    }
+
+    /**
+     * Returns the pool's current size, queue depth and task timings.
+     */
+    public JSONObject getStats() {
+        JSONObject ret = new JSONObject();
+        try {
+            ret.put("poolSize", getPoolSize());
+            ret.put("activeCount", getActiveCount());
+            ret.put("largestPoolSize", getLargestPoolSize());
+            ret.put("maximumPoolSize", getMaximumPoolSize());
+            ret.put("queueDepth", getQueue().size());
+            ret.put("completedTaskCount", getCompletedTaskCount());
+            ret.put("rejectedCount", rejectedCount.get());
+            ret.put("queueLatencyMicros", queueLatencyMicros.toJSON());
+            ret.put("runTimeMicros", runTimeMicros.toJSON());
+        } catch (JSONException e) {
+            // Can't happen: all keys are non-null.
+        }
+        return ret;
+    }
+
+    /**
+     * Clears the task timings.
+     */
+    public void resetStats() {
+        queueLatencyMicros.reset();
+        runTimeMicros.reset();
+        rejectedCount.set(0);
+    }
+
+    private static boolean isReliable(Runnable r) {
+        return r instanceof TimedRunnable && ((TimedRunnable) r).reliable;
+    }
+
+    private class TimedRunnable implements Runnable {
+        private final Runnable task;
+        private final boolean reliable;
+        private final long enqueueNanos = System.nanoTime();
+
+        TimedRunnable(Runnable task, boolean reliable) {
+            this.task = task;
+            this.reliable = reliable;
+        }
+
+        public void run() {
+            long startNanos = System.nanoTime();
+            queueLatencyMicros.record((startNanos - enqueueNanos) / 1000);
+            try {
+                task.run();
+            } finally {
+                runTimeMicros.record((System.nanoTime() - startNanos) / 1000);
+            }
+        }
+    }
+
+    private static class PriorityThreadFactory implements ThreadFactory {
+        private final String name;
+        private final int threadPriority;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        PriorityThreadFactory(String name, int threadPriority) {
+            this.name = name;
+            this.threadPriority = threadPriority;
+        }
+
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                public void run() {
+                    Process.setThreadPriority(threadPriority);
+                    r.run();
+                }
+            }, name + "-" + threadCount.incrementAndGet());
+        }
+    }
+
+    /**
+     * Holds at most capacity tasks from execute(), but always has room for
+     * reliable ones.
+     */
+    private static class TaskQueue extends LinkedBlockingQueue<Runnable> {
+        private final int capacity;
+
+        TaskQueue(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public boolean offer(Runnable r) {
+            // Reliable tasks count towards the size, so that they still hold
+            // back other tasks while there are many of them.
+            if (!isReliable(r) && size() >= capacity) {
+                return false;
+            }
+            return super.offer(r);
+        }
+
+        // Removes the oldest task that isn't reliable. Returns whether there was one.
+        boolean discardOldest() {
+            Iterator<Runnable> it = iterator();
+            while (it.hasNext()) {
+                if (!isReliable(it.next())) {
+                    it.remove();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class CountingRejectedExecutionHandler implements RejectedExecutionHandler {
+        final AtomicInteger count = new AtomicInteger();
+        private final OverflowPolicy policy;
+        private final RejectedExecutionHandler abortPolicy = new ThreadPoolExecutor.AbortPolicy();
+        private final RejectedExecutionHandler callerRunsPolicy = new ThreadPoolExecutor.CallerRunsPolicy();
+
+        CountingRejectedExecutionHandler(OverflowPolicy policy) {
+            this.policy = policy;
+        }
+
+        // Only tasks from execute() get here. Reliable ones always fit in the
+        // queue, unless the executor has been shut down.
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            count.incrementAndGet();
+            switch (policy) {
+                case ABORT:
+                    abortPolicy.rejectedExecution(r, executor);
+                    break;
+                case DISCARD_OLDEST:
+                    if (!executor.isShutdown() && ((TaskQueue) executor.getQueue()).discardOldest()) {
+                        executor.execute(r);
+                    }
+                    // Otherwise the queue holds only reliable tasks, so this one is dropped.
+                    break;
+                default:
+                    callerRunsPolicy.rejectedExecution(r, executor);
+                    break;
+            }
+        }
+    }
+}
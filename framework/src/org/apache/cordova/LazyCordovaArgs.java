@@ -0,0 +1,355 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * CordovaArgs that work directly on the exec() arguments in JSON form, rather
+ * than on a JSONArray. The constructor only finds where each argument starts
+ * and ends. An argument is parsed the first time it is read, so arguments that
+ * a plugin never looks at are never parsed. getArrayBuffer() decodes straight
+ * from the JSON text without creating a String first.
+ *
+ * Getters convert values the same way that JSONArray's do.
+ */
+public class LazyCordovaArgs extends CordovaArgs {
+    private final String rawArgs;
+    // Start and end (exclusive) offsets within rawArgs of each argument.
+    private final int[] starts;
+    private final int[] ends;
+    private final Object[] values;
+    private JSONArray jsonArray;
+
+    public LazyCordovaArgs(String rawArgs) throws JSONException {
+        this.rawArgs = rawArgs;
+        int[] tmpStarts = new int[8];
+        int[] tmpEnds = new int[8];
+        int count = 0;
+        int pos = skipWhitespace(0);
+        if (pos >= rawArgs.length() || rawArgs.charAt(pos) != '[') {
+            throw new JSONException("Expected a JSON array, got: " + rawArgs);
+        }
+        pos = skipWhitespace(pos + 1);
+        if (pos < rawArgs.length() && rawArgs.charAt(pos) == ']') {
+            pos += 1;
+        } else {
+            while (true) {
+                int end = skipValue(pos);
+                if (end == pos) {
+                    throw syntaxError(pos);
+                }
+                if (count == tmpStarts.length) {
+                    tmpStarts = grow(tmpStarts);
+                    tmpEnds = grow(tmpEnds);
+                }
+                tmpStarts[count] = pos;
+                tmpEnds[count] = end;
+                count += 1;
+                pos = skipWhitespace(end);
+                char c = pos < rawArgs.length() ? rawArgs.charAt(pos) : 0;
+                if (c == ']') {
+                    pos += 1;
+                    break;
+                } else if (c != ',') {
+                    throw syntaxError(pos);
+                }
+                pos = skipWhitespace(pos + 1);
+            }
+        }
+        if (skipWhitespace(pos) != rawArgs.length()) {
+            throw syntaxError(pos);
+        }
+        starts = tmpStarts;
+        ends = tmpEnds;
+        values = new Object[count];
+    }
+
+    /**
+     * Returns the number of arguments.
+     */
+    public int length() {
+        return values.length;
+    }
+
+    private static int[] grow(int[] arr) {
+        int[] ret = new int[arr.length * 2];
+        System.arraycopy(arr, 0, ret, 0, arr.length);
+        return ret;
+    }
+
+    private JSONException syntaxError(int pos) {
+        return new JSONException("Unexpected character at " + pos + " of " + rawArgs);
+    }
+
+    private int skipWhitespace(int pos) {
+        int len = rawArgs.length();
+        while (pos < len && rawArgs.charAt(pos) <= ' ') {
+            pos += 1;
+        }
+        return pos;
+    }
+
+    // Returns the offset just past the value that starts at pos. Only strings
+    // and nesting are tracked. The value itself is checked when parsed.
+    private int skipValue(int pos) throws JSONException {
+        int len = rawArgs.length();
+        int depth = 0;
+        while (pos < len) {
+            char c = rawArgs.charAt(pos);
+            if (c == '"') {
+                pos = skipString(pos);
+                if (depth == 0) {
+                    return pos;
+                }
+                continue;
+            } else if (c == '[' || c == '{') {
+                depth += 1;
+            } else if (c == ']' || c == '}') {
+                if (depth == 0) {
+                    return pos;
+                }
+                depth -= 1;
+                if (depth == 0) {
+                    return pos + 1;
+                }
+            } else if (depth == 0 && (c == ',' || c <= ' ')) {
+                return pos;
+            }
+            pos += 1;
+        }
+        throw syntaxError(pos);
+    }
+
+    private int skipString(int pos) throws JSONException {
+        int len = rawArgs.length();
+        for (pos += 1; pos < len; ++pos) {
+            char c = rawArgs.charAt(pos);
+            if (c == '\\') {
+                pos += 1;
+            } else if (c == '"') {
+                return pos + 1;
+            }
+        }
+        throw syntaxError(pos);
+    }
+
+    private boolean isPlainString(int index) {
+        int start = starts[index];
+        int end = ends[index];
+        if (rawArgs.charAt(start) != '"') {
+            return false;
+        }
+        for (int i = start + 1; i < end - 1; ++i) {
+            if (rawArgs.charAt(i) == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Object materialize(int index) throws JSONException {
+        Object ret = values[index];
+        if (ret == null) {
+            if (isPlainString(index)) {
+                // No escapes, so the value is exactly what's between the quotes.
+                ret = rawArgs.substring(starts[index] + 1, ends[index] - 1);
+            } else {
+                ret = new JSONTokener(rawArgs.substring(starts[index], ends[index])).nextValue();
+            }
+            values[index] = ret;
+        }
+        return ret;
+    }
+
+    // Wraps a single value so that JSONArray's conversion rules can be reused.
+    private JSONArray wrap(int index) throws JSONException {
+        if (index < 0 || index >= values.length) {
+            throw new JSONException("Index " + index + " out of range [0.." + values.length + ")");
+        }
+        return new JSONArray().put(materialize(index));
+    }
+
+    private JSONArray optWrap(int index) {
+        try {
+            return wrap(index);
+        } catch (JSONException e) {
+            return new JSONArray();
+        }
+    }
+
+    /**
+     * Returns all arguments as a JSONArray. Parses every argument the first time it's called.
+     */
+    public JSONArray toJSONArray() throws JSONException {
+        if (jsonArray == null) {
+            jsonArray = new JSONArray(rawArgs);
+        }
+        return jsonArray;
+    }
+
+    @Override
+    public Object get(int index) throws JSONException {
+        return wrap(index).get(0);
+    }
+
+    @Override
+    public boolean getBoolean(int index) throws JSONException {
+        return wrap(index).getBoolean(0);
+    }
+
+    @Override
+    public double getDouble(int index) throws JSONException {
+        return wrap(index).getDouble(0);
+    }
+
+    @Override
+    public int getInt(int index) throws JSONException {
+        return wrap(index).getInt(0);
+    }
+
+    @Override
+    public JSONArray getJSONArray(int index) throws JSONException {
+        return wrap(index).getJSONArray(0);
+    }
+
+    @Override
+    public JSONObject getJSONObject(int index) throws JSONException {
+        return wrap(index).getJSONObject(0);
+    }
+
+    @Override
+    public long getLong(int index) throws JSONException {
+        return wrap(index).getLong(0);
+    }
+
+    @Override
+    public String getString(int index) throws JSONException {
+        return wrap(index).getString(0);
+    }
+
+    @Override
+    public Object opt(int index) {
+        return optWrap(index).opt(0);
+    }
+
+    @Override
+    public boolean optBoolean(int index) {
+        return optWrap(index).optBoolean(0);
+    }
+
+    @Override
+    public double optDouble(int index) {
+        return optWrap(index).optDouble(0);
+    }
+
+    @Override
+    public int optInt(int index) {
+        return optWrap(index).optInt(0);
+    }
+
+    @Override
+    public JSONArray optJSONArray(int index) {
+        return optWrap(index).optJSONArray(0);
+    }
+
+    @Override
+    public JSONObject optJSONObject(int index) {
+        return optWrap(index).optJSONObject(0);
+    }
+
+    @Override
+    public long optLong(int index) {
+        return optWrap(index).optLong(0);
+    }
+
+    @Override
+    public String optString(int index) {
+        return optWrap(index).optString(0);
+    }
+
+    @Override
+    public boolean isNull(int index) {
+        return optWrap(index).isNull(0);
+    }
+
+    @Override
+    public byte[] getArrayBuffer(int index) throws JSONException {
+        if (index < 0 || index >= values.length) {
+            throw new JSONException("Index " + index + " out of range [0.." + values.length + ")");
+        }
+        if (isPlainString(index)) {
+            return decodeBase64(rawArgs, starts[index] + 1, ends[index] - 1);
+        }
+        return super.getArrayBuffer(index);
+    }
+
+    private static final byte[] BASE64_VALUES = new byte[128];
+    static {
+        for (int i = 0; i < BASE64_VALUES.length; ++i) {
+            BASE64_VALUES[i] = -1;
+        }
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); ++i) {
+            BASE64_VALUES[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    // Decodes base64 in s[start..end) as leniently as Base64.decode(s, Base64.DEFAULT):
+    // characters outside of the alphabet are skipped and decoding stops at the first '='.
+    static byte[] decodeBase64(String s, int start, int end) {
+        while (end > start && s.charAt(end - 1) == '=') {
+            end -= 1;
+        }
+        // Exact unless characters are skipped.
+        byte[] ret = new byte[(int) ((end - start) * 6L / 8)];
+        int outPos = 0;
+        int accum = 0;
+        int numBits = 0;
+        for (int i = start; i < end; ++i) {
+            char c = s.charAt(i);
+            if (c == '=') {
+                break;
+            }
+            int value = c < 128 ? BASE64_VALUES[c] : -1;
+            if (value == -1) {
+                continue;
+            }
+            accum = (accum << 6) | value;
+            numBits += 6;
+            if (numBits >= 8) {
+                numBits -= 8;
+                ret[outPos++] = (byte) (accum >> numBits);
+            }
+        }
+        // A single character left over can't encode a byte, which Base64.decode() also rejects.
+        if (numBits == 6) {
+            throw new IllegalArgumentException("bad base-64");
+        }
+        if (outPos == ret.length) {
+            return ret;
+        }
+        byte[] trimmed = new byte[outPos];
+        System.arraycopy(ret, 0, trimmed, 0, outPos);
+        return trimmed;
+    }
+}
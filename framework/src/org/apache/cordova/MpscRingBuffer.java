@@ -0,0 +1,192 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded multi-producer / single-consumer queue backed by a ring of slots.
+ *
+ * offer() may be called from any thread and does not lock or allocate while
+ * there is room in the ring. All other methods are consumer-side and must be
+ * serialized by the caller (NativeToJsMessageQueue holds its own monitor).
+ *
+ * When the ring is full, elements spill into an overflow list instead of
+ * blocking the producer, since the producer may be the very thread that is
+ * supposed to drain the queue (e.g. an exec() on the WebCore thread).
+ * Per-producer ordering is kept by routing every offer() to the overflow list
+ * while it is non-empty, and by having the consumer take from the ring whenever
+ * it has claimed slots. A producer that saw the list empty just before it
+ * filled up can still land an element in the ring after the consumer moved on
+ * to the list, and that element must come before anything the same producer
+ * adds to the list afterwards.
+ */
+class MpscRingBuffer<E> {
+    private final Object[] slots;
+    // sequences[i] == position: slot is free for the producer claiming position.
+    // sequences[i] == position + 1: slot holds the element at position.
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // Only written by the consumer. Volatile so that isEmpty() works from any thread.
+    private volatile long head;
+
+    private final ArrayList<E> overflow = new ArrayList<E>();
+    private int overflowHead;
+    private volatile boolean overflowing;
+    // Consumer-only. True once the head element has been found in the overflow
+    // list, until it is polled.
+    private boolean headInOverflow;
+
+    MpscRingBuffer(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        slots = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; ++i) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Adds an element. Safe to call from any thread.
+     */
+    void offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        if (!overflowing && offerToRing(e)) {
+            return;
+        }
+        synchronized (overflow) {
+            overflowing = true;
+            overflow.add(e);
+        }
+    }
+
+    private boolean offerToRing(E e) {
+        while (true) {
+            long pos = tail.get();
+            int index = (int) pos & mask;
+            long seq = sequences.get(index);
+            if (seq == pos) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots[index] = e;
+                    sequences.lazySet(index, pos + 1);
+                    return true;
+                }
+            } else if (seq < pos) {
+                // The consumer has not yet freed this slot.
+                return false;
+            }
+            // Another producer claimed pos first. Try again.
+        }
+    }
+
+    /**
+     * Returns whether there is nothing to consume. May be called from any thread,
+     * in which case the answer is only a hint.
+     */
+    boolean isEmpty() {
+        return tail.get() == head && !overflowing;
+    }
+
+    /**
+     * Returns the head element without removing it, or null if there is none
+     * (or it is still being published).
+     */
+    @SuppressWarnings("unchecked")
+    E peek() {
+        if (locateHeadInOverflow()) {
+            synchronized (overflow) {
+                return overflow.get(overflowHead);
+            }
+        }
+        long pos = head;
+        int index = (int) pos & mask;
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+        return (E) slots[index];
+    }
+
+    /**
+     * Removes and returns the head element, or null if there is none. This is
+     * the element that the preceding peek() returned, if any.
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        if (locateHeadInOverflow()) {
+            headInOverflow = false;
+            synchronized (overflow) {
+                E ret = overflow.get(overflowHead);
+                overflow.set(overflowHead++, null);
+                if (overflowHead == overflow.size()) {
+                    overflow.clear();
+                    overflowHead = 0;
+                    overflowing = false;
+                }
+                return ret;
+            }
+        }
+        long pos = head;
+        int index = (int) pos & mask;
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+        E ret = (E) slots[index];
+        slots[index] = null;
+        sequences.lazySet(index, pos + mask + 1);
+        head = pos + 1;
+        return ret;
+    }
+
+    /**
+     * Discards all published elements.
+     */
+    void clear() {
+        while (poll() != null) {
+        }
+    }
+
+    // The ring is always drained first: anything a producer put in the ring
+    // before it overflowed must be delivered before its overflow elements.
+    // Once the head is found in the overflow list, it stays there until polled,
+    // even if a late element shows up in the ring meanwhile. No producer can
+    // have added that element after the one at the head of the list.
+    private boolean locateHeadInOverflow() {
+        if (headInOverflow) {
+            return true;
+        }
+        if (tail.get() != head || !overflowing) {
+            return false;
+        }
+        synchronized (overflow) {
+            // Reading tail under the lock makes sure that a ring element claimed
+            // before any of the elements now in the list is seen.
+            headInOverflow = tail.get() == head && overflowHead < overflow.size();
+        }
+        return headInOverflow;
+    }
+}
@@ -18,15 +18,26 @@
 */
 package org.apache.cordova;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.cordova.CordovaInterface;
 import org.apache.cordova.PluginResult;
 
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Message;
 import android.util.Log;
+import android.view.Choreographer;
 import com.amazon.android.webkit.AmazonWebView;
 
 /**
@@ -38,133 +49,610 @@ public class NativeToJsMessageQueue {
     // This must match the default value in incubator-cordova-js/lib/android/exec.js
     private static final int DEFAULT_BRIDGE_MODE = 2;
     
-    // Set this to true to force plugin results to be encoding as
-    // JS instead of the custom format (useful for benchmarking).
-    private static final boolean FORCE_ENCODE_USING_EVAL = false;
-
     // Disable URL-based exec() bridge by default since it's a bit of a
     // security concern.
     static final boolean ENABLE_LOCATION_CHANGE_EXEC_MODE = false;
-        
-    // Disable sending back native->JS messages during an exec() when the active
-    // exec() is asynchronous. Set this to true when running bridge benchmarks.
-    static final boolean DISABLE_EXEC_CHAINING = false;
     
-    // Arbitrarily chosen upper limit for how much data to send to JS in one shot.
-    // This currently only chops up on message boundaries. It may be useful
-    // to allow it to break up messages.
-    private static int MAX_PAYLOAD_SIZE = 50 * 1024 * 10240;
+    // How much data to send to JS in one shot is tuned from how long JS took to
+    // process earlier payloads, aiming to keep each flush within FRAME_BUDGET_MS.
+    // Messages larger than the budget are sent in chunks.
+    private static final double FRAME_BUDGET_MS = 8;
+    private static final int INITIAL_PAYLOAD_BUDGET = 64 * 1024;
+    private static final int MIN_PAYLOAD_BUDGET = 4 * 1024;
+    private static final int MAX_PAYLOAD_SIZE = 1024 * 1024;
+    private static final int INITIAL_MESSAGE_BUDGET = 200;
+    private static final int MIN_MESSAGE_BUDGET = 10;
+    // Weight given to each new timing sample.
+    private static final double SAMPLE_WEIGHT = 0.25;
+    // Longer gaps than this mean JS was busy with something else (or the app
+    // was paused), so they say nothing about the cost of processing messages.
+    private static final long MAX_SAMPLE_NANOS = 500 * 1000000L;
+    // Mirrors the amount that popAndEncodeAsJs() adds to each message.
+    private static final int JS_MESSAGE_OVERHEAD = 50;
+
+    // Number of bytes read from a MESSAGE_TYPE_STREAM source per message.
+    // Base64 encoding makes each message a third larger, which still fits
+    // within the initial payload budget.
+    private static final int STREAM_CHUNK_SIZE = 32 * 1024;
+
+    // Number of messages that can be pending before enqueueing starts to allocate.
+    private static final int QUEUE_CAPACITY = 1024;
+
+    // Longest time (in ms) that a flush will wait for the next frame before
+    // running anyway. Can be changed with the NativeToJsMaxFlushDelay preference.
+    // A value of 0 flushes on the next pass of the UI thread's message loop.
+    private static final int DEFAULT_MAX_FLUSH_DELAY = 50;
+
+    // While bridge modes are being measured, a probe is sent every PROBE_INTERVAL
+    // ms that the queue is idle. A probe that hasn't been acknowledged after
+    // STALL_TIMEOUT ms means that its mode isn't delivering anything.
+    private static final int PROBE_INTERVAL = 50;
+    private static final int STALL_TIMEOUT = 3000;
     
     /**
      * The index into registeredListeners to treat as active. 
      */
-    private int activeListenerIndex;
+    private volatile int activeListenerIndex;
     
     /**
      * When true, the active listener is not fired upon enqueue. When set to false,
      * the active listener will be fired if the queue is non-empty. 
      */
-    private boolean paused;
+    private volatile boolean paused;
+
+    /**
+     * When true, plugin results are encoded as JS instead of the custom format.
+     * Set by the BridgeForceEncodeUsingEval preference (useful for benchmarking).
+     */
+    private volatile boolean forceEncodeUsingEval;
+
+    /**
+     * When true, native->JS messages are not sent back as the return value of
+     * exec(). Set by the BridgeDisableExecChaining preference (useful for benchmarking).
+     */
+    private volatile boolean execChainingDisabled;
+
+    /**
+     * Every message is tagged with an epoch: plugin results with that of the
+     * exec() they answer, and other messages with the one they were enqueued in.
+     * A new epoch starts with each page, and messages from before minEpoch are
+     * dropped rather than sent. Streams also stop once their epoch is over.
+     */
+    private volatile int epoch;
+    private volatile int minEpoch;
+
+    /**
+     * Set when JS on a new page has called beginEpoch() before onPageStarted
+     * has called reset() for it (these happen on different threads). Holds the
+     * URL of the page (without its fragment) so that reset() can tell whether
+     * it is for the same page. Guarded by the lock on "this", as are the fields below.
+     */
+    private String earlyStartUrl;
+    private int earlyStartEpoch;
+    // The URL passed to the last reset(), while no page has begun an epoch since.
+    private String lastResetUrl;
     
     /**
      * The list of JavaScript statements to be sent to JavaScript.
+     * Any thread may add to it, but only code holding the lock on "this" may remove from it.
+     */
+    private final MpscRingBuffer<JsMessage> queue = new MpscRingBuffer<JsMessage>(QUEUE_CAPACITY);
+
+    /**
+     * Queued coalescing results, by callbackId. A newer result for the same
+     * callbackId replaces the payload of the queued message instead of being
+     * queued behind it.
      */
-    private final LinkedList<JsMessage> queue = new LinkedList<JsMessage>();
+    private final ConcurrentHashMap<String, JsMessage> coalescingMessages = new ConcurrentHashMap<String, JsMessage>();
 
     /**
      * The array of listeners that can be used to send messages to JS.
      */
     private final BridgeMode[] registeredListeners;    
     
+    /**
+     * The message currently being sent in chunks, and how much of it has been sent.
+     * Guarded by the lock on "this", as are the budget fields below.
+     */
+    private JsMessage splitMessage;
+    private int splitOffset;
+
+    // Messages popped for the payload that is being built. Reused between flushes.
+    private final ArrayList<JsMessage> batch = new ArrayList<JsMessage>();
+    // Streams whose chunk was just popped, so that they can read the next one.
+    // They are started once the lock is released.
+    private final ArrayList<StreamPump> readyPumps = new ArrayList<StreamPump>();
+
+    private int payloadBudget = INITIAL_PAYLOAD_BUDGET;
+    private int messageBudget = INITIAL_MESSAGE_BUDGET;
+    private double charsPerMs;
+    private double messagesPerMs;
+    // Set when JS was handed a payload that tells it to poll for more. The
+    // time until it polls again is how long the payload took to process.
+    private long sampleStartNanos;
+    private int sampleChars;
+    private int sampleMessages;
+    private boolean sampleLimitedByCount;
+
+    private final BridgeStats stats = new BridgeStats();
+
     private final CordovaInterface cordova;
     private final CordovaWebView webView;
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private final int maxFlushDelay;
+
+    /**
+     * Picks the bridge mode when the AdaptiveBridgeMode preference is set.
+     * Null once a mode has been set explicitly. Guarded by the lock on "this",
+     * as are the probe fields below.
+     */
+    private BridgeModeSelector modeSelector;
+
+    private int probeId;
+    // The bridge mode of the probe that is awaiting its ack, or -1.
+    private int probeMode = -1;
+    private long probeStartNanos;
+    // Whether cordova.js on the current page has started, and so can ack probes.
+    private boolean jsReady;
+
+    private final Runnable probeCheck = new Runnable() {
+        public void run() {
+            sendProbe();
+        }
+    };
 
     public NativeToJsMessageQueue(CordovaWebView webView, CordovaInterface cordova) {
         this.cordova = cordova;
         this.webView = webView;
+        maxFlushDelay = parseMaxFlushDelay(webView.getProperty("NativeToJsMaxFlushDelay", null));
+        forceEncodeUsingEval = "true".equals(webView.getProperty("BridgeForceEncodeUsingEval", "false"));
+        execChainingDisabled = "true".equals(webView.getProperty("BridgeDisableExecChaining", "false"));
         registeredListeners = new BridgeMode[4];
         registeredListeners[0] = null;  // Polling. Requires no logic.
         registeredListeners[1] = new LoadUrlBridgeMode();
         registeredListeners[2] = new OnlineEventsBridgeMode();
         registeredListeners[3] = new PrivateApiBridgeMode();
+        if ("true".equals(webView.getProperty("AdaptiveBridgeMode", "false"))) {
+            modeSelector = new BridgeModeSelector(cordova.getActivity(), CordovaWebView.getWebViewBackend(cordova.getFactory()), uiHandler);
+        }
         reset();
     }
     
+    private static int parseMaxFlushDelay(String value) {
+        if (value == null) {
+            return DEFAULT_MAX_FLUSH_DELAY;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            Log.w(LOG_TAG, "Invalid NativeToJsMaxFlushDelay: " + value);
+            return DEFAULT_MAX_FLUSH_DELAY;
+        }
+    }
+
     /**
-     * Changes the bridge mode.
+     * Changes the bridge mode. This also stops the AdaptiveBridgeMode preference
+     * from changing it, since an explicit choice takes precedence.
      */
     public void setBridgeMode(int value) {
         if (value < 0 || value >= registeredListeners.length) {
             Log.d(LOG_TAG, "Invalid NativeToJsBridgeMode: " + value);
         } else {
-            if (value != activeListenerIndex) {
-                Log.d(LOG_TAG, "Set native->JS mode to " + value);
-                synchronized (this) {
-                    activeListenerIndex = value;
-                    BridgeMode activeListener = registeredListeners[value];
-                    if (!paused && !queue.isEmpty() && activeListener != null) {
-                        activeListener.onNativeToJsMessageAvailable();
-                    }
+            synchronized (this) {
+                if (modeSelector != null) {
+                    Log.d(LOG_TAG, "Bridge mode set explicitly. Disabling adaptive bridge mode.");
+                    modeSelector = null;
+                    probeMode = -1;
+                    uiHandler.removeCallbacks(probeCheck);
+                }
+                activateBridgeMode(value);
+            }
+        }
+    }
+
+    // Must be called while holding the lock on "this".
+    private void activateBridgeMode(int value) {
+        if (value != activeListenerIndex) {
+            Log.d(LOG_TAG, "Set native->JS mode to " + value);
+            activeListenerIndex = value;
+            BridgeMode activeListener = registeredListeners[value];
+            if (!paused && !queue.isEmpty() && activeListener != null) {
+                activeListener.onNativeToJsMessageAvailable();
+            }
+        }
+    }
+
+    /**
+     * Called when the given bridge mode is unable to deliver messages.
+     */
+    private void onBridgeModeFailed(int mode) {
+        synchronized (this) {
+            if (modeSelector == null) {
+                return;
+            }
+            if (mode == probeMode) {
+                probeMode = -1;
+            }
+            modeSelector.onModeFailed(mode);
+            activateBridgeMode(modeSelector.getSelectedMode());
+        }
+    }
+
+    // Runs on the UI thread while bridge modes are being measured. Sends a
+    // probe with the next mode to measure, once the previous one is answered
+    // and nothing else is queued. Modes that fail outright are reported
+    // directly, but some just never deliver.
+    private void sendProbe() {
+        JsMessage probe = null;
+        synchronized (this) {
+            if (modeSelector == null || !modeSelector.isMeasuring()) {
+                return;
+            }
+            if (probeMode != -1) {
+                if (System.nanoTime() - probeStartNanos > STALL_TIMEOUT * 1000000L) {
+                    onBridgeModeFailed(probeMode);
+                }
+            } else if (jsReady && !paused && splitMessage == null && queue.isEmpty()) {
+                int mode = modeSelector.nextProbeMode();
+                if (mode != -1) {
+                    probeId += 1;
+                    probeMode = mode;
+                    probeStartNanos = System.nanoTime();
+                    activateBridgeMode(mode);
+                    // Uses exec() itself rather than a helper so that any version of cordova.js can answer.
+                    probe = new JsMessage("cordova.require('cordova/exec')(null,null,'PluginManager','ackBridgeProbe',[" + probeId + "]);");
                 }
             }
+            if (modeSelector != null && modeSelector.isMeasuring()) {
+                uiHandler.postDelayed(probeCheck, PROBE_INTERVAL);
+            }
+        }
+        if (probe != null) {
+            enqueueMessage(probe);
+        }
+    }
+
+    /**
+     * Called when JS acknowledges a probe. The time since the probe was queued
+     * covers its whole trip to JS, including the flush of the bridge mode.
+     */
+    void onBridgeProbeAcked(int id) {
+        synchronized (this) {
+            if (modeSelector == null || probeMode == -1 || id != probeId) {
+                return;
+            }
+            int mode = probeMode;
+            probeMode = -1;
+            modeSelector.onProbeAcked(mode, System.nanoTime() - probeStartNanos);
+            activateBridgeMode(modeSelector.getSelectedMode());
         }
     }
     
+    /**
+     * Returns the latency and throughput stats of this queue.
+     */
+    public BridgeStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Changes whether plugin results are encoded as JS rather than the custom format.
+     * Affects results added after the call.
+     */
+    public void setForceEncodeUsingEval(boolean value) {
+        forceEncodeUsingEval = value;
+    }
+
+    public boolean getForceEncodeUsingEval() {
+        return forceEncodeUsingEval;
+    }
+
+    /**
+     * Changes whether exec() returns pending native->JS messages.
+     */
+    public void setExecChainingDisabled(boolean value) {
+        execChainingDisabled = value;
+    }
+
+    public boolean getExecChainingDisabled() {
+        return execChainingDisabled;
+    }
+
     /**
      * Clears all messages and resets to the default bridge mode.
      */
     public void reset() {
+        reset(null);
+    }
+
+    /**
+     * Called when the given page starts loading. Clears the messages of
+     * previous pages and resets to the default bridge mode. If JS on this page
+     * already called beginEpoch(), its messages are kept and true is returned.
+     */
+    public boolean reset(String url) {
         synchronized (this) {
-            queue.clear();
-            setBridgeMode(DEFAULT_BRIDGE_MODE);
+            url = stripFragment(url);
+            boolean pageAlreadyStarted = url != null && url.equals(earlyStartUrl);
+            if (pageAlreadyStarted) {
+                minEpoch = earlyStartEpoch;
+            } else {
+                epoch += 1;
+                minEpoch = epoch;
+                coalescingMessages.clear();
+            }
+            earlyStartUrl = null;
+            // The page's beginEpoch() is still to come, unless it already happened.
+            lastResetUrl = pageAlreadyStarted ? null : url;
+            discardStaleMessages();
+            if (splitMessage != null && splitMessage.epoch < minEpoch) {
+                splitMessage = null;
+            }
+            sampleStartNanos = 0;
+            if (modeSelector != null) {
+                // Any probe in flight went away with the old page.
+                probeMode = -1;
+                jsReady = pageAlreadyStarted;
+                activateBridgeMode(modeSelector.getSelectedMode());
+                uiHandler.removeCallbacks(probeCheck);
+                if (modeSelector.isMeasuring()) {
+                    uiHandler.postDelayed(probeCheck, PROBE_INTERVAL);
+                }
+            } else {
+                activateBridgeMode(DEFAULT_BRIDGE_MODE);
+            }
+            return pageAlreadyStarted;
         }
     }
 
-    private int calculatePackedMessageLength(JsMessage message) {
-        int messageLen = message.calculateEncodedLength();
-        String messageLenStr = String.valueOf(messageLen);
-        return messageLenStr.length() + messageLen + 1;        
+    /**
+     * Called when cordova.js starts up on a page. Messages enqueued from now on
+     * belong to it. Returns true if this happened before reset() was called for
+     * the page, in which case that reset() keeps them.
+     */
+    public boolean beginEpoch(String url) {
+        synchronized (this) {
+            url = stripFragment(url);
+            jsReady = true;
+            if (url == null) {
+                // Sent by an older cordova.js, which can't be matched up with reset().
+                return false;
+            }
+            if (url.equals(lastResetUrl)) {
+                // The usual order: onPageStarted already reset the queue for this page.
+                lastResetUrl = null;
+                return false;
+            }
+            lastResetUrl = null;
+            epoch += 1;
+            earlyStartUrl = url;
+            earlyStartEpoch = epoch;
+            // Callback IDs start over with each page, so don't coalesce with older results.
+            coalescingMessages.clear();
+            return true;
+        }
     }
-    
+
+    /**
+     * Returns the current epoch. PluginManager tags each exec() with it, so
+     * that results for a page that has gone away are dropped.
+     */
+    int getEpoch() {
+        return epoch;
+    }
+
+    private static String stripFragment(String url) {
+        if (url == null) {
+            return null;
+        }
+        int hashIdx = url.indexOf('#');
+        return hashIdx == -1 ? url : url.substring(0, hashIdx);
+    }
+
+    // Drops messages at the head of the queue that are from before minEpoch.
+    // Must be called while holding the lock on "this".
+    private void discardStaleMessages() {
+        JsMessage message;
+        while ((message = queue.peek()) != null && message.epoch < minEpoch) {
+            queue.poll();
+            if (message.seal()) {
+                coalescingMessages.remove(message.jsPayloadOrCallbackId, message);
+            }
+            if (message.streamPump != null) {
+                message.streamPump.close();
+            }
+            if (message.flowControlOwner != null) {
+                message.flowControlOwner.onResultDequeued();
+            }
+        }
+    }
+
     private void packMessage(JsMessage message, StringBuilder sb) {
-        int len = message.calculateEncodedLength();
-        sb.append(len)
+        sb.append(message.calculateEncodedLength())
           .append(' ');
         message.encodeAsMessage(sb);
     }
+
+    /**
+     * Packs as much of splitMessage as fits in the budget. The final chunk is
+     * prefixed with 'c' and the others with 'C', and JS joins them back up.
+     */
+    private void packNextChunk(StringBuilder sb) {
+        JsMessage message = splitMessage;
+        int start = splitOffset;
+        int end = Math.min(start + payloadBudget, message.encodedLength);
+        // Don't separate the halves of a surrogate pair.
+        if (end < message.encodedLength && Character.isHighSurrogate(message.charAt(end - 1))) {
+            end -= 1;
+        }
+        boolean lastChunk = end == message.encodedLength;
+        sb.append(end - start + 1)
+          .append(' ')
+          .append(lastChunk ? 'c' : 'C');
+        message.encodeAsMessage(sb, start, end);
+        if (lastChunk) {
+            splitMessage = null;
+        } else {
+            splitOffset = end;
+        }
+    }
+
+    /**
+     * Called when a payload is handed to JS that ends by asking for more.
+     */
+    private void startProcessingTimeSample(int numChars, int numMessages, boolean limitedByCount) {
+        // Payloads returned from exec() are processed along with whatever
+        // called exec(), so their timing is meaningless.
+        if (paused) {
+            return;
+        }
+        sampleStartNanos = System.nanoTime();
+        sampleChars = numChars;
+        sampleMessages = numMessages;
+        sampleLimitedByCount = limitedByCount;
+    }
+
+    /**
+     * Called when JS asks for messages. Updates the budget with the time it took
+     * JS to process the previous payload.
+     */
+    private void finishProcessingTimeSample() {
+        if (sampleStartNanos == 0 || paused) {
+            return;
+        }
+        long elapsedNanos = System.nanoTime() - sampleStartNanos;
+        sampleStartNanos = 0;
+        if (elapsedNanos > MAX_SAMPLE_NANOS) {
+            return;
+        }
+        double elapsedMs = Math.max(elapsedNanos / 1000000.0, 0.1);
+        // Only the limit that cut the payload short learns from the sample.
+        if (sampleLimitedByCount) {
+            double rate = sampleMessages / elapsedMs;
+            messagesPerMs = messagesPerMs == 0 ? rate : messagesPerMs + SAMPLE_WEIGHT * (rate - messagesPerMs);
+            messageBudget = Math.max(MIN_MESSAGE_BUDGET, (int) (messagesPerMs * FRAME_BUDGET_MS));
+        } else {
+            double rate = sampleChars / elapsedMs;
+            charsPerMs = charsPerMs == 0 ? rate : charsPerMs + SAMPLE_WEIGHT * (rate - charsPerMs);
+            payloadBudget = Math.max(MIN_PAYLOAD_BUDGET, Math.min(MAX_PAYLOAD_SIZE, (int) (charsPerMs * FRAME_BUDGET_MS)));
+        }
+    }
+
+    /**
+     * Returns the head of the queue after fixing its content, so that its size
+     * can be checked against the budget. A coalescing result that arrives after
+     * this is queued behind it instead of replacing it.
+     * Must be called while holding the lock on "this".
+     */
+    private JsMessage peekSealed() {
+        // Results of execs from an old page can be queued behind newer messages,
+        // so every message is checked once it reaches the head.
+        discardStaleMessages();
+        JsMessage message = queue.peek();
+        if (message != null && message.seal()) {
+            coalescingMessages.remove(message.jsPayloadOrCallbackId, message);
+        }
+        return message;
+    }
+
+    /**
+     * Removes the head of the queue. Must be called while holding the lock on "this".
+     */
+    private JsMessage popMessage() {
+        JsMessage message = queue.poll();
+        if (message != null) {
+            stats.recordQueueLatency(currentStatsChannel(), System.nanoTime() - message.enqueueNanos);
+        }
+        if (message != null && message.seal()) {
+            coalescingMessages.remove(message.jsPayloadOrCallbackId, message);
+        }
+        if (message != null && message.streamPump != null) {
+            // Read the next chunk now that this one is on its way.
+            readyPumps.add(message.streamPump);
+        }
+        if (message != null && message.flowControlOwner != null) {
+            message.flowControlOwner.onResultDequeued();
+        }
+        return message;
+    }
     
+    // Starts the streams that popMessage() found ready. Called after releasing
+    // the lock, since a pool may be saturated or run tasks on the calling thread.
+    private void startReadyPumps() {
+        StreamPump[] pumps;
+        synchronized (this) {
+            if (readyPumps.isEmpty()) {
+                return;
+            }
+            pumps = readyPumps.toArray(new StreamPump[readyPumps.size()]);
+            readyPumps.clear();
+        }
+        for (StreamPump pump : pumps) {
+            InstrumentedThreadPoolExecutor.executeReliably(cordova.getThreadPool(), pump);
+        }
+    }
+
     /**
      * Combines and returns queued messages combined into a single string.
-     * Combines as many messages as possible, while staying under MAX_PAYLOAD_SIZE.
+     * Combines as many messages as possible, while staying within the payload budget.
+     * A message too large for the budget is returned one chunk at a time.
      * Returns null if the queue is empty.
      */
     public String popAndEncode(boolean fromOnlineEvent) {
+        String ret = popAndEncodeLocked(fromOnlineEvent);
+        startReadyPumps();
+        return ret;
+    }
+
+    private String popAndEncodeLocked(boolean fromOnlineEvent) {
         synchronized (this) {
-            registeredListeners[activeListenerIndex].notifyOfFlush(fromOnlineEvent);
-            if (queue.isEmpty()) {
+            BridgeMode activeListener = registeredListeners[activeListenerIndex];
+            if (activeListener != null) {
+                activeListener.notifyOfFlush(fromOnlineEvent);
+            }
+            finishProcessingTimeSample();
+            discardStaleMessages();
+            if (splitMessage == null && queue.isEmpty()) {
                 return null;
             }
-            int totalPayloadLen = 0;
+            JsMessage message = peekSealed();
+            if (splitMessage == null && message != null && message.packedLength > payloadBudget) {
+                splitMessage = popMessage();
+                splitOffset = 0;
+            }
             int numMessagesToSend = 0;
-            for (JsMessage message : queue) {
-                int messageSize = calculatePackedMessageLength(message);
-                if (numMessagesToSend > 0 && totalPayloadLen + messageSize > MAX_PAYLOAD_SIZE && MAX_PAYLOAD_SIZE > 0) {
-                    break;
+            boolean limitedByCount = false;
+            StringBuilder sb;
+            if (splitMessage != null) {
+                sb = new StringBuilder(payloadBudget + 16);
+                packNextChunk(sb);
+            } else {
+                int totalPayloadLen = 0;
+                while ((message = peekSealed()) != null) {
+                    int messageSize = message.packedLength;
+                    if (numMessagesToSend > 0 && (totalPayloadLen + messageSize > payloadBudget || numMessagesToSend >= messageBudget)) {
+                        limitedByCount = numMessagesToSend >= messageBudget;
+                        break;
+                    }
+                    totalPayloadLen += messageSize;
+                    numMessagesToSend += 1;
+                    batch.add(popMessage());
                 }
-                totalPayloadLen += messageSize;
-                numMessagesToSend += 1;
-            }
 
-            StringBuilder sb = new StringBuilder(totalPayloadLen);
-            for (int i = 0; i < numMessagesToSend; ++i) {
-                JsMessage message = queue.removeFirst();
-                packMessage(message, sb);
+                sb = new StringBuilder(totalPayloadLen + 1);
+                for (int i = 0; i < numMessagesToSend; ++i) {
+                    packMessage(batch.get(i), sb);
+                }
+                batch.clear();
             }
             
-            if (!queue.isEmpty()) {
+            if (splitMessage != null || !queue.isEmpty()) {
+                startProcessingTimeSample(sb.length(), numMessagesToSend, limitedByCount);
                 // Attach a char to indicate that there are more messages pending.
+                // This includes messages that a producer is still in the middle of adding.
                 sb.append('*');
             }
+            reportFlush(numMessagesToSend, sb.length());
             String ret = sb.toString();
             return ret;
         }
@@ -172,29 +660,45 @@ public class NativeToJsMessageQueue {
     
     /**
      * Same as popAndEncode(), except encodes in a form that can be executed as JS.
+     * JS statements can't be split, so a message that is too large for the budget
+     * is left for JS to fetch through popAndEncode() by polling.
      */
     private String popAndEncodeAsJs() {
+        String ret = popAndEncodeAsJsLocked();
+        startReadyPumps();
+        return ret;
+    }
+
+    private String popAndEncodeAsJsLocked() {
         synchronized (this) {
-            int length = queue.size();
-            if (length == 0) {
+            finishProcessingTimeSample();
+            discardStaleMessages();
+            if (splitMessage == null && queue.isEmpty()) {
                 return null;
             }
             int totalPayloadLen = 0;
             int numMessagesToSend = 0;
-            for (JsMessage message : queue) {
-                int messageSize = message.calculateEncodedLength() + 50; // overestimate.
-                if (numMessagesToSend > 0 && totalPayloadLen + messageSize > MAX_PAYLOAD_SIZE && MAX_PAYLOAD_SIZE > 0) {
+            boolean limitedByCount = false;
+            JsMessage message;
+            while (splitMessage == null && (message = peekSealed()) != null) {
+                int messageSize = message.calculateEncodedLength() + JS_MESSAGE_OVERHEAD; // overestimate.
+                if (totalPayloadLen + messageSize > payloadBudget && (numMessagesToSend > 0 || messageSize > payloadBudget)) {
+                    break;
+                }
+                if (numMessagesToSend >= messageBudget) {
+                    limitedByCount = true;
                     break;
                 }
                 totalPayloadLen += messageSize;
                 numMessagesToSend += 1;
+                batch.add(popMessage());
             }
-            boolean willSendAllMessages = numMessagesToSend == queue.size();
+            boolean willSendAllMessages = splitMessage == null && queue.isEmpty();
             StringBuilder sb = new StringBuilder(totalPayloadLen + (willSendAllMessages ? 0 : 100));
             // Wrap each statement in a try/finally so that if one throws it does 
             // not affect the next.
             for (int i = 0; i < numMessagesToSend; ++i) {
-                JsMessage message = queue.removeFirst();
+                message = batch.get(i);
                 if (willSendAllMessages && (i + 1 == numMessagesToSend)) {
                     message.encodeAsJsMessage(sb);
                 } else {
@@ -204,11 +708,14 @@ public class NativeToJsMessageQueue {
                 }
             }
             if (!willSendAllMessages) {
-                sb.append("window.setTimeout(function(){cordova.require('cordova/plugin/android/polling').pollOnce();},0);");
+                startProcessingTimeSample(sb.length(), numMessagesToSend, limitedByCount);
+                sb.append("window.setTimeout(function(){cordova.require('cordova/exec').pollOnce();},0);");
             }
             for (int i = willSendAllMessages ? 1 : 0; i < numMessagesToSend; ++i) {
                 sb.append('}');
             }
+            batch.clear();
+            reportFlush(numMessagesToSend, sb.length());
             String ret = sb.toString();
             return ret;
         }
@@ -233,26 +740,78 @@ public class NativeToJsMessageQueue {
         // clear the callbacks.
         boolean noResult = result.getStatus() == PluginResult.Status.NO_RESULT.ordinal();
         boolean keepCallback = result.getKeepCallback();
-        if (noResult && keepCallback) {
+        int messageEpoch = result.epoch == -1 ? epoch : result.epoch;
+        boolean stale = messageEpoch < minEpoch && result.getMessageType() != PluginResult.MESSAGE_TYPE_STREAM;
+        // Also drop results for an exec() from a page that has gone away. Streams
+        // are left to StreamPump, which closes their source.
+        if ((noResult && keepCallback) || stale) {
+            if (result.flowControlOwner != null) {
+                result.flowControlOwner.onResultDequeued();
+            }
             return;
         }
-        JsMessage message = new JsMessage(result, callbackId);
-        if (FORCE_ENCODE_USING_EVAL) {
+        if (result.getMessageType() == PluginResult.MESSAGE_TYPE_STREAM) {
+            if (!coalescingMessages.isEmpty()) {
+                coalescingMessages.remove(callbackId);
+            }
+            // Reading may block, and the calling thread is often the WebCore
+            // or UI thread, so even the first chunk is read on the thread pool.
+            InstrumentedThreadPoolExecutor.executeReliably(cordova.getThreadPool(), new StreamPump(result, callbackId));
+            return;
+        }
+        // Render the message here, on the producer's thread, rather than while
+        // the queue is being drained. The JS form is only rendered up front when
+        // the active bridge mode is going to use it.
+        BridgeMode activeListener = registeredListeners[activeListenerIndex];
+        boolean renderJs = activeListener != null && activeListener.encodesAsJs();
+        JsMessage message;
+        if (forceEncodeUsingEval) {
+            message = new JsMessage(result, callbackId, false, false);
             StringBuilder sb = new StringBuilder(message.calculateEncodedLength() + 50);
             message.encodeAsJsMessage(sb);
             message = new JsMessage(sb.toString());
+            message.flowControlOwner = result.flowControlOwner;
+            message.epoch = messageEpoch;
+        } else if (keepCallback && result.getCoalescing()) {
+            message = new JsMessage(result, callbackId, true, renderJs);
+            message.epoch = messageEpoch;
+            JsMessage pending = coalescingMessages.get(callbackId);
+            // Callback IDs start over with each page, so only results of the same exec() coalesce.
+            JsMessage replaced = pending == null || pending.epoch != messageEpoch ? null : pending.replaceWith(message);
+            if (replaced != null) {
+                // The queued message will deliver this result instead. It has
+                // already notified the bridge, so there is nothing more to do.
+                if (replaced.flowControlOwner != null) {
+                    replaced.flowControlOwner.onResultDequeued();
+                }
+                return;
+            }
+            coalescingMessages.put(callbackId, message);
+        } else {
+            // A result that can't be coalesced must stay behind everything
+            // queued before it, so stop later results from replacing those.
+            if (!coalescingMessages.isEmpty()) {
+                coalescingMessages.remove(callbackId);
+            }
+            message = new JsMessage(result, callbackId, false, renderJs);
         }
 
-        enqueueMessage(message);
+        enqueueMessage(message, messageEpoch);
     }
     
     private void enqueueMessage(JsMessage message) {
-        synchronized (this) {
-            queue.add(message);
-            if (!paused && registeredListeners[activeListenerIndex] != null) {
-                registeredListeners[activeListenerIndex].onNativeToJsMessageAvailable();
-            }
-        }        
+        enqueueMessage(message, epoch);
+    }
+
+    private void enqueueMessage(JsMessage message, int messageEpoch) {
+        message.epoch = messageEpoch;
+        message.enqueueNanos = System.nanoTime();
+        // Producers don't take the lock. Only draining the queue requires it.
+        queue.offer(message);
+        BridgeMode activeListener = registeredListeners[activeListenerIndex];
+        if (!paused && activeListener != null) {
+            activeListener.onNativeToJsMessageAvailable();
+        }
     }
     
     public void setPaused(boolean value) {
@@ -263,11 +822,10 @@ public class NativeToJsMessageQueue {
         }
         paused = value;
         if (!value) {
-            synchronized (this) {
-                if (!queue.isEmpty() && registeredListeners[activeListenerIndex] != null) {
-                    registeredListeners[activeListenerIndex].onNativeToJsMessageAvailable();
-                }
-            }   
+            BridgeMode activeListener = registeredListeners[activeListenerIndex];
+            if (!queue.isEmpty() && activeListener != null) {
+                activeListener.onNativeToJsMessageAvailable();
+            }
         }
     }
     
@@ -275,42 +833,250 @@ public class NativeToJsMessageQueue {
         return paused;
     }
 
+    // Messages returned by exec() are counted separately from those sent by the bridge mode.
+    private int currentStatsChannel() {
+        return paused ? BridgeStats.EXEC_RETURN : activeListenerIndex;
+    }
+
+    private void reportFlush(int numMessages, int numChars) {
+        stats.recordFlush(currentStatsChannel(), numMessages, numChars);
+        if (Log.isLoggable(LOG_TAG, Log.VERBOSE)) {
+            Log.v(LOG_TAG, "Flushed " + numMessages + " messages using bridge mode " + activeListenerIndex);
+        }
+    }
+
+    /**
+     * Runs a flush on the UI thread, aligned to the start of the next frame.
+     * Requests made while a flush is already pending are folded into it, so a
+     * burst of results costs one UI thread post instead of one per result.
+     */
+    private class FlushScheduler implements Runnable {
+        private final Runnable flush;
+        private final AtomicBoolean pending = new AtomicBoolean();
+        // Only accessed on the UI thread. Null before JellyBean.
+        private FrameWaiter frameCallback;
+        private final Runnable timeout = new Runnable() {
+            public void run() {
+                flushNow();
+            }
+        };
+
+        FlushScheduler(Runnable flush) {
+            this.flush = flush;
+        }
+
+        /**
+         * Schedules a flush unless one is already pending. May be called from any thread.
+         */
+        void request() {
+            if (pending.compareAndSet(false, true)) {
+                cordova.getActivity().runOnUiThread(this);
+            }
+        }
+
+        public void run() {
+            if (maxFlushDelay <= 0 || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+                flushNow();
+                return;
+            }
+            if (frameCallback == null) {
+                frameCallback = new FrameWaiter(timeout);
+            }
+            frameCallback.post();
+            uiHandler.postDelayed(timeout, maxFlushDelay);
+        }
+
+        private void flushNow() {
+            // The frame callback and the timeout race each other. Only the first one flushes.
+            if (!pending.compareAndSet(true, false)) {
+                return;
+            }
+            if (frameCallback != null) {
+                frameCallback.cancel();
+                uiHandler.removeCallbacks(timeout);
+            }
+            // pending is cleared before flushing so that a message added during
+            // the flush schedules another one.
+            flush.run();
+        }
+    }
+
+    /** Kept in its own class so that older devices never load Choreographer. */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameWaiter implements Choreographer.FrameCallback {
+        private final Runnable target;
+
+        FrameWaiter(Runnable target) {
+            this.target = target;
+        }
+
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void cancel() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        public void doFrame(long frameTimeNanos) {
+            target.run();
+        }
+    }
+
+    /**
+     * Sends a MESSAGE_TYPE_STREAM result one chunk at a time. The next chunk is
+     * read only once the previous one has been popped, so at most a couple of
+     * chunks are in memory no matter how large the source is.
+     */
+    private class StreamPump implements Runnable {
+        private final PluginResult result;
+        private final PluginResult.Status status;
+        private final String callbackId;
+        private final int streamEpoch;
+        // Each chunk counts against the flow control of the sender while it is
+        // queued. The first one takes the place of the stream result itself.
+        private final CallbackContext flowControlOwner;
+        private boolean firstChunk = true;
+        private byte[] readBuffer;
+        // Called on the thread that granted the credits, so reading goes back to the pool.
+        private final Runnable resume = new Runnable() {
+            public void run() {
+                InstrumentedThreadPoolExecutor.executeReliably(cordova.getThreadPool(), StreamPump.this);
+            }
+        };
+
+        StreamPump(PluginResult result, String callbackId) {
+            this.result = result;
+            this.flowControlOwner = result.flowControlOwner;
+            this.streamEpoch = result.epoch == -1 ? epoch : result.epoch;
+            this.status = PluginResult.Status.values()[result.getStatus()];
+            this.callbackId = callbackId;
+        }
+
+        public void run() {
+            if (streamEpoch < minEpoch) {
+                // The page that asked for the data is gone.
+                close();
+                if (firstChunk && flowControlOwner != null) {
+                    flowControlOwner.onResultDequeued();
+                }
+                return;
+            }
+            if (!firstChunk && flowControlOwner != null && !flowControlOwner.takeStreamCredit(resume)) {
+                // Picked up again once JS grants more credits.
+                return;
+            }
+            PluginResult chunkResult;
+            boolean done;
+            try {
+                ByteBuffer buffer = result.getBufferSource();
+                if (buffer != null) {
+                    int length = Math.min(buffer.remaining(), STREAM_CHUNK_SIZE);
+                    if (buffer.hasArray()) {
+                        chunkResult = new PluginResult(status, buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+                        buffer.position(buffer.position() + length);
+                    } else {
+                        if (readBuffer == null) {
+                            readBuffer = new byte[STREAM_CHUNK_SIZE];
+                        }
+                        buffer.get(readBuffer, 0, length);
+                        chunkResult = new PluginResult(status, readBuffer, 0, length);
+                    }
+                    done = !buffer.hasRemaining();
+                } else {
+                    if (readBuffer == null) {
+                        readBuffer = new byte[STREAM_CHUNK_SIZE];
+                    }
+                    InputStream stream = result.getStreamSource();
+                    int length = 0;
+                    done = false;
+                    while (length < STREAM_CHUNK_SIZE) {
+                        int numRead = stream.read(readBuffer, length, STREAM_CHUNK_SIZE - length);
+                        if (numRead < 0) {
+                            done = true;
+                            break;
+                        }
+                        length += numRead;
+                    }
+                    chunkResult = new PluginResult(status, readBuffer, 0, length);
+                }
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Failed to read stream for " + callbackId, e);
+                chunkResult = new PluginResult(PluginResult.Status.IO_EXCEPTION);
+                done = true;
+            }
+            chunkResult.setKeepCallback(done ? result.getKeepCallback() : true);
+            if (flowControlOwner != null) {
+                if (!firstChunk) {
+                    flowControlOwner.onResultQueued();
+                }
+                chunkResult.flowControlOwner = flowControlOwner;
+            }
+            firstChunk = false;
+
+            BridgeMode activeListener = registeredListeners[activeListenerIndex];
+            JsMessage message = new JsMessage(chunkResult, callbackId, false, activeListener != null && activeListener.encodesAsJs());
+            if (done) {
+                close();
+            } else {
+                message.streamPump = this;
+            }
+            enqueueMessage(message, streamEpoch);
+        }
+
+        void close() {
+            InputStream stream = result.getStreamSource();
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    Log.d(LOG_TAG, "Failed to close stream for " + callbackId, e);
+                }
+            }
+        }
+    }
+
     private abstract class BridgeMode {
         abstract void onNativeToJsMessageAvailable();
         void notifyOfFlush(boolean fromOnlineEvent) {}
+        // Whether messages are delivered through popAndEncodeAsJs().
+        boolean encodesAsJs() { return false; }
     }
     
     /** Uses webView.loadUrl("javascript:") to execute messages. */
     private class LoadUrlBridgeMode extends BridgeMode {
-        final Runnable runnable = new Runnable() {
+        final FlushScheduler scheduler = new FlushScheduler(new Runnable() {
             public void run() {
                 String js = popAndEncodeAsJs();
                 if (js != null) {
                     webView.loadUrlNow("javascript:" + js);
                 }
             }
-        };
+        });
         
         @Override void onNativeToJsMessageAvailable() {
-            cordova.getActivity().runOnUiThread(runnable);
+            scheduler.request();
+        }
+        @Override boolean encodesAsJs() {
+            return true;
         }
     }
 
     /** Uses online/offline events to tell the JS when to poll for messages. */
     private class OnlineEventsBridgeMode extends BridgeMode {
         boolean online = false;
-        final Runnable runnable = new Runnable() {
+        final FlushScheduler scheduler = new FlushScheduler(new Runnable() {
             public void run() {
                 if (!queue.isEmpty()) {
                     webView.setNetworkAvailable(online);
                 }
             }                
-        };
+        });
         OnlineEventsBridgeMode() {
             webView.setNetworkAvailable(true);
         }
         @Override void onNativeToJsMessageAvailable() {
-            cordova.getActivity().runOnUiThread(runnable);
+            scheduler.request();
         }
         // Track when online/offline events are fired so that we don't fire excess events.
         @Override void notifyOfFlush(boolean fromOnlineEvent) {
@@ -330,10 +1096,13 @@ public class NativeToJsMessageQueue {
     	// Which first appeared in 3.2.4ish.
     	private static final int EXECUTE_JS = 194;
     	
+    	// Producers on any thread may get here first, so these are guarded by
+    	// the lock on the bridge mode.
     	Method sendMessageMethod;
     	Object webViewCore;
     	boolean initFailed;
 
+    	// Must be called while holding the lock on the bridge mode.
     	@SuppressWarnings("rawtypes")
     	private void initReflection() {
         	Object webViewObject = webView;
@@ -363,132 +1132,225 @@ public class NativeToJsMessageQueue {
     	}
     	
         @Override void onNativeToJsMessageAvailable() {
-        	if (sendMessageMethod == null && !initFailed) {
-        		initReflection();
+        	Method method;
+        	Object core;
+        	boolean failed;
+        	synchronized (this) {
+        		if (sendMessageMethod == null && !initFailed) {
+        			initReflection();
+        		}
+        		method = sendMessageMethod;
+        		core = webViewCore;
+        		failed = initFailed;
         	}
         	// webViewCore is lazily initialized, and so may not be available right away.
-        	if (sendMessageMethod != null) {
+        	if (method != null) {
 	        	String js = popAndEncodeAsJs();
 	        	Message execJsMessage = Message.obtain(null, EXECUTE_JS, js);
 				try {
-				    sendMessageMethod.invoke(webViewCore, execJsMessage);
+				    method.invoke(core, execJsMessage);
 				} catch (Throwable e) {
 					Log.e(LOG_TAG, "Reflection message bridge failed.", e);
+					onBridgeModeFailed(3);
 				}
+        	} else if (failed) {
+        	    onBridgeModeFailed(3);
         	}
         }
+        @Override boolean encodesAsJs() {
+            return true;
+        }
     }    
     private static class JsMessage {
         final String jsPayloadOrCallbackId;
-        final PluginResult pluginResult;
+        PluginResult pluginResult;
+        // The message in the format expected by processMessages() in exec.js is
+        // header + payload. The payload is kept separate so that large results
+        // are not copied until they are written into the outgoing string.
+        String header;
+        String payload;
+        // Length of header + payload, and of the same with its length prefix.
+        int encodedLength;
+        int packedLength;
+        // The message as a JS statement is jsHeader + jsPayload + a suffix.
+        // Null until rendered.
+        String jsHeader;
+        String jsPayload;
+        // For coalescing messages, the most recently rendered replacement. Set to null by seal().
+        final AtomicReference<JsMessage> latest;
+        // For stream chunks other than the last, reads the next chunk once this one is popped.
+        StreamPump streamPump;
+        // The flow-controlled CallbackContext that sent the result, if any.
+        CallbackContext flowControlOwner;
+        // When the message was added to the queue, in System.nanoTime() units.
+        long enqueueNanos;
+        // The epoch of the page that the message is for.
+        int epoch;
+
         JsMessage(String js) {
             if (js == null) {
                 throw new NullPointerException();
             }
             jsPayloadOrCallbackId = js;
             pluginResult = null;
+            header = "J";
+            payload = js;
+            jsPayload = js;
+            latest = null;
+            setEncodedLength(js.length() + 1);
         }
-        JsMessage(PluginResult pluginResult, String callbackId) {
+
+        /**
+         * Renders the result on the calling thread so that the consumer only has to
+         * concatenate. When renderJs is false, the JS form is rendered lazily.
+         */
+        JsMessage(PluginResult pluginResult, String callbackId, boolean coalescing, boolean renderJs) {
             if (callbackId == null || pluginResult == null) {
                 throw new NullPointerException();
             }
             jsPayloadOrCallbackId = callbackId;
             this.pluginResult = pluginResult;
-        }
-        
-        int calculateEncodedLength() {
-            if (pluginResult == null) {
-                return jsPayloadOrCallbackId.length() + 1;
-            }
-            int statusLen = String.valueOf(pluginResult.getStatus()).length();
-            int ret = 2 + statusLen + 1 + jsPayloadOrCallbackId.length() + 1;
-            switch (pluginResult.getMessageType()) {
-                case PluginResult.MESSAGE_TYPE_BOOLEAN: // f or t
-                case PluginResult.MESSAGE_TYPE_NULL: // N
-                    ret += 1;
-                    break;
-                case PluginResult.MESSAGE_TYPE_NUMBER: // n
-                    ret += 1 + pluginResult.getMessage().length();
-                    break;
-                case PluginResult.MESSAGE_TYPE_STRING: // s
-                    ret += 1 + pluginResult.getStrMessage().length();
-                    break;
-                case PluginResult.MESSAGE_TYPE_BINARYSTRING:
-                    ret += 1 + pluginResult.getMessage().length();
-                    break;
-                case PluginResult.MESSAGE_TYPE_ARRAYBUFFER:
-                    ret += 1 + pluginResult.getMessage().length();
-                    break;
-                case PluginResult.MESSAGE_TYPE_JSON:
-                default:
-                    ret += pluginResult.getMessage().length();
-            }
-            return ret;
-        }
-        
-        void encodeAsMessage(StringBuilder sb) {
-            if (pluginResult == null) {
-                sb.append('J')
-                  .append(jsPayloadOrCallbackId);
-                return;
-            }
+            flowControlOwner = pluginResult.flowControlOwner;
+            latest = coalescing ? new AtomicReference<JsMessage>(this) : null;
+
             int status = pluginResult.getStatus();
             boolean noResult = status == PluginResult.Status.NO_RESULT.ordinal();
             boolean resultOk = status == PluginResult.Status.OK.ordinal();
             boolean keepCallback = pluginResult.getKeepCallback();
 
+            StringBuilder sb = new StringBuilder(callbackId.length() + 8);
             sb.append((noResult || resultOk) ? 'S' : 'F')
               .append(keepCallback ? '1' : '0')
               .append(status)
               .append(' ')
-              .append(jsPayloadOrCallbackId)
+              .append(callbackId)
               .append(' ');
             switch (pluginResult.getMessageType()) {
                 case PluginResult.MESSAGE_TYPE_BOOLEAN:
                     sb.append(pluginResult.getMessage().charAt(0)); // t or f.
+                    payload = "";
                     break;
                 case PluginResult.MESSAGE_TYPE_NULL: // N
                     sb.append('N');
+                    payload = "";
                     break;
                 case PluginResult.MESSAGE_TYPE_NUMBER: // n
-                    sb.append('n')
-                      .append(pluginResult.getMessage());
+                    sb.append('n');
+                    payload = pluginResult.getMessage();
                     break;
                 case PluginResult.MESSAGE_TYPE_STRING: // s
                     sb.append('s');
-                    sb.append(pluginResult.getStrMessage());
+                    payload = pluginResult.getStrMessage();
                     break;
                 case PluginResult.MESSAGE_TYPE_BINARYSTRING: // S
                     sb.append('S');
-                    sb.append(pluginResult.getMessage());
-                    break;                    
+                    payload = pluginResult.getMessage();
+                    break;
                 case PluginResult.MESSAGE_TYPE_ARRAYBUFFER: // A
                     sb.append('A');
-                    sb.append(pluginResult.getMessage());
+                    payload = pluginResult.getMessage();
                     break;
                 case PluginResult.MESSAGE_TYPE_JSON:
                 default:
-                    sb.append(pluginResult.getMessage()); // [ or {
+                    payload = pluginResult.getMessage(); // [ or {
+            }
+            header = sb.toString();
+            setEncodedLength(header.length() + payload.length());
+            if (renderJs) {
+                renderJs();
             }
         }
-        
+
+        private void setEncodedLength(int len) {
+            encodedLength = len;
+            int digits = 1;
+            for (int i = len; i >= 10; i /= 10) {
+                digits += 1;
+            }
+            packedLength = digits + 1 + len;
+        }
+
+        private void renderJs() {
+            int status = pluginResult.getStatus();
+            boolean success = (status == PluginResult.Status.OK.ordinal()) || (status == PluginResult.Status.NO_RESULT.ordinal());
+            jsHeader = "cordova.callbackFromNative('" + jsPayloadOrCallbackId + "'," + success + "," + status + ",[";
+            jsPayload = pluginResult.getMessage();
+        }
+
+        /**
+         * Swaps in a newer, already rendered message. Returns the message that
+         * was replaced, or null if this message has already been popped.
+         */
+        JsMessage replaceWith(JsMessage newMessage) {
+            JsMessage current;
+            do {
+                current = latest.get();
+                if (current == null) {
+                    return null;
+                }
+            } while (!latest.compareAndSet(current, newMessage));
+            return current;
+        }
+
+        /**
+         * Fixes the content of a coalescing message before it is measured and popped.
+         * Returns whether the message was a coalescing one. May be called more than once.
+         */
+        boolean seal() {
+            if (latest == null) {
+                return false;
+            }
+            JsMessage newest = latest.getAndSet(null);
+            // Null if already sealed.
+            if (newest != null && newest != this) {
+                pluginResult = newest.pluginResult;
+                header = newest.header;
+                payload = newest.payload;
+                encodedLength = newest.encodedLength;
+                packedLength = newest.packedLength;
+                jsHeader = newest.jsHeader;
+                jsPayload = newest.jsPayload;
+            }
+            return true;
+        }
+
+        int calculateEncodedLength() {
+            return encodedLength;
+        }
+
+        void encodeAsMessage(StringBuilder sb) {
+            sb.append(header)
+              .append(payload);
+        }
+
+        /**
+         * Appends characters [start, end) of what encodeAsMessage() would append.
+         */
+        void encodeAsMessage(StringBuilder sb, int start, int end) {
+            int headerLength = header.length();
+            if (start < headerLength) {
+                sb.append(header, start, Math.min(end, headerLength));
+            }
+            if (end > headerLength) {
+                sb.append(payload, Math.max(start - headerLength, 0), end - headerLength);
+            }
+        }
+
+        char charAt(int index) {
+            int headerLength = header.length();
+            return index < headerLength ? header.charAt(index) : payload.charAt(index - headerLength);
+        }
+
         void encodeAsJsMessage(StringBuilder sb) {
             if (pluginResult == null) {
                 sb.append(jsPayloadOrCallbackId);
             } else {
-                int status = pluginResult.getStatus();
-                boolean success = (status == PluginResult.Status.OK.ordinal()) || (status == PluginResult.Status.NO_RESULT.ordinal());
-                sb.append("cordova.callbackFromNative('")
-                  .append(jsPayloadOrCallbackId)
-                  .append("',")
-                  .append(success)
-                  .append(",")
-                  .append(status)
-                  .append(",[")
-                  .append(pluginResult.getMessage())
-                  .append("],")
-                  .append(pluginResult.getKeepCallback())
-                  .append(");");
+                if (jsHeader == null) {
+                    renderJs();
+                }
+                sb.append(jsHeader)
+                  .append(jsPayload)
+                  .append(pluginResult.getKeepCallback() ? "],true);" : "],false);");
             }
         }
     }
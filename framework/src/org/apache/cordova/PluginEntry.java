@@ -29,6 +29,11 @@ import org.apache.cordova.CordovaPlugin;
  * This class represents a service entry object.
  */
 public class PluginEntry {
+    private static final String TAG = "PluginEntry";
+
+    private static final String GENERATED_FACTORY_CLASS = "org.apache.cordova.GeneratedPluginFactory";
+    private static PluginFactory generatedFactory;
+    private static boolean generatedFactoryLoaded;
 
     /**
      * The name of the service that this plugin implements
@@ -43,15 +48,34 @@ public class PluginEntry {
     /**
      * The plugin object.
      * Plugin objects are only created when they are called from JavaScript.  (see PluginManager.exec)
+     * They are created by GeneratedPluginFactory when the build made one, or else through reflection.
      * The exception is if the onload flag is set, then they are created when PluginManager is initialized.
+     * Volatile, and only set once initialized, since it is read without the lock.
      */
-    public CordovaPlugin plugin = null;
+    public volatile CordovaPlugin plugin = null;
 
     /**
      * Flag that indicates the plugin object should be created when PluginManager is initialized.
      */
     public boolean onload = false;
 
+    /**
+     * Flag that indicates the plugin object can be created on a background thread.
+     * Used only when the ParallelPluginStartup preference is set.
+     */
+    public boolean backgroundInit = false;
+
+    /**
+     * Services whose onload plugins must be created before this one's.
+     */
+    public String[] onloadAfter = new String[0];
+
+    // Runs the plugin's ExecutionThread.SERIAL actions. Created when first needed.
+    private SerialExecutor serialExecutor;
+
+    // The plugin's @CordovaAction methods. Looked up when first needed.
+    private volatile ActionTable actionTable;
+
     /**
      * Constructor
      *
@@ -78,23 +102,59 @@ public class PluginEntry {
         this.onload = false;
     }
 
+    /**
+     * Returns the executor that runs this service's ExecutionThread.SERIAL actions
+     * one at a time. It outlives the plugin object, so that actions from before
+     * a page load still finish before those from after it.
+     */
+    synchronized SerialExecutor getSerialExecutor(CordovaInterface ctx) {
+        if (serialExecutor == null) {
+            serialExecutor = new SerialExecutor(ctx.getThreadPool());
+        }
+        return serialExecutor;
+    }
+
+    /**
+     * Returns the @CordovaAction methods of the given plugin, which must be this entry's plugin.
+     */
+    ActionTable getActionTable(CordovaPlugin plugin) {
+        ActionTable ret = actionTable;
+        if (ret == null || ret.pluginClass != plugin.getClass()) {
+            // Tables are shared per class, so a racing thread gets the same one.
+            ret = ActionTable.forClass(plugin.getClass());
+            actionTable = ret;
+        }
+        return ret;
+    }
+
     /**
      * Create plugin object.
      * If plugin is already created, then just return it.
+     * Synchronized since onload plugins may be created on a background thread.
      *
      * @return                      The plugin object
      */
-    public CordovaPlugin createPlugin(CordovaWebView webView, CordovaInterface ctx) {
+    public synchronized CordovaPlugin createPlugin(CordovaWebView webView, CordovaInterface ctx) {
         if (this.plugin != null) {
             return this.plugin;
         }
         try {
-            @SuppressWarnings("rawtypes")
-            Class c = getClassByName(this.pluginClass);
-            if (isCordovaPlugin(c)) {
-                this.plugin = (CordovaPlugin) c.newInstance();
-                this.plugin.initialize(ctx, webView);
-                return plugin;
+            PluginFactory factory = getGeneratedFactory();
+            CordovaPlugin newPlugin = factory == null ? null : factory.create(this.service, this.pluginClass);
+            if (newPlugin == null) {
+                // Not in config.xml at build time, e.g. added or remapped through PluginManager.addService().
+                @SuppressWarnings("rawtypes")
+                Class c = getClassByName(this.pluginClass);
+                if (isCordovaPlugin(c)) {
+                    newPlugin = (CordovaPlugin) c.newInstance();
+                }
+            }
+            if (newPlugin != null) {
+                // Initialized before it is published, since callers that see a
+                // non-null plugin use it without taking the lock.
+                newPlugin.initialize(ctx, webView);
+                this.plugin = newPlugin;
+                return newPlugin;
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -103,6 +163,24 @@ public class PluginEntry {
         return null;
     }
 
+    /**
+     * Returns the factory that the build generated from config.xml, or null if the
+     * app was built without it (e.g. by Eclipse), in which case reflection is used.
+     */
+    private static synchronized PluginFactory getGeneratedFactory() {
+        if (!generatedFactoryLoaded) {
+            generatedFactoryLoaded = true;
+            try {
+                generatedFactory = (PluginFactory) Class.forName(GENERATED_FACTORY_CLASS).newInstance();
+            } catch (ClassNotFoundException e) {
+                LOG.d(TAG, GENERATED_FACTORY_CLASS + " not found, creating plugins through reflection");
+            } catch (Exception e) {
+                LOG.e(TAG, "Failed to create " + GENERATED_FACTORY_CLASS, e);
+            }
+        }
+        return generatedFactory;
+    }
+
     /**
      * Get the class.
      *
@@ -0,0 +1,37 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+/**
+ * Creates plugin objects without reflection.
+ *
+ * The ant build implements this as org.apache.cordova.GeneratedPluginFactory,
+ * which plugin-factory.xsl generates from config.xml. It has a "new" expression
+ * for each plugin, so ProGuard can see which plugin classes are used. It is
+ * compiled after the rest of the app, and left out if any plugin class is
+ * missing or has no public no-argument constructor, in which case plugins are
+ * created through reflection.
+ */
+public interface PluginFactory {
+    /**
+     * Returns a new instance of the plugin for the given service, or null if the
+     * factory doesn't know the service, or knows it by a different plugin class.
+     */
+    CordovaPlugin create(String service, String pluginClass);
+}
@@ -0,0 +1,127 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import android.content.Intent;
+import android.net.Uri;
+
+/**
+ * For each CordovaPlugin hook that PluginManager fans out, the created plugins
+ * that override it. Plugins that keep the default no-op are left out, so that
+ * hot paths like remapUri() (called for every subresource) touch only those
+ * that care.
+ *
+ * The lists are arrays that are replaced rather than modified, so they can be
+ * read from any thread without locking or allocating an iterator.
+ */
+class PluginHookLists {
+    static final int PAUSE = 0;
+    static final int RESUME = 1;
+    static final int DESTROY = 2;
+    static final int MESSAGE = 3;
+    static final int NEW_INTENT = 4;
+    static final int REMAP_URI = 5;
+    static final int RESET = 6;
+    private static final int NUM_HOOKS = 7;
+
+    private static final CordovaPlugin[] EMPTY = new CordovaPlugin[0];
+
+    private static final ConcurrentHashMap<Class<?>, boolean[]> overriddenHooksByClass = new ConcurrentHashMap<Class<?>, boolean[]>();
+
+    private volatile CordovaPlugin[][] lists = newEmptyLists();
+
+    private static CordovaPlugin[][] newEmptyLists() {
+        CordovaPlugin[][] ret = new CordovaPlugin[NUM_HOOKS][];
+        for (int i = 0; i < NUM_HOOKS; ++i) {
+            ret[i] = EMPTY;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the plugins that override the given hook. The array must not be modified.
+     */
+    CordovaPlugin[] get(int hook) {
+        return lists[hook];
+    }
+
+    synchronized void add(CordovaPlugin plugin) {
+        boolean[] overridden = getOverriddenHooks(plugin.getClass());
+        CordovaPlugin[][] newLists = lists.clone();
+        for (int hook = 0; hook < NUM_HOOKS; ++hook) {
+            if (overridden[hook]) {
+                CordovaPlugin[] old = newLists[hook];
+                CordovaPlugin[] list = new CordovaPlugin[old.length + 1];
+                System.arraycopy(old, 0, list, 0, old.length);
+                list[old.length] = plugin;
+                newLists[hook] = list;
+            }
+        }
+        lists = newLists;
+    }
+
+    synchronized void remove(CordovaPlugin plugin) {
+        CordovaPlugin[][] newLists = lists.clone();
+        for (int hook = 0; hook < NUM_HOOKS; ++hook) {
+            CordovaPlugin[] old = newLists[hook];
+            for (int i = 0; i < old.length; ++i) {
+                if (old[i] == plugin) {
+                    CordovaPlugin[] list = new CordovaPlugin[old.length - 1];
+                    System.arraycopy(old, 0, list, 0, i);
+                    System.arraycopy(old, i + 1, list, i, old.length - i - 1);
+                    newLists[hook] = list;
+                    break;
+                }
+            }
+        }
+        lists = newLists;
+    }
+
+    synchronized void clear() {
+        lists = newEmptyLists();
+    }
+
+    // Worked out once per plugin class.
+    private static boolean[] getOverriddenHooks(Class<?> c) {
+        boolean[] ret = overriddenHooksByClass.get(c);
+        if (ret == null) {
+            ret = new boolean[NUM_HOOKS];
+            ret[PAUSE] = overrides(c, "onPause", boolean.class);
+            ret[RESUME] = overrides(c, "onResume", boolean.class);
+            ret[DESTROY] = overrides(c, "onDestroy");
+            ret[MESSAGE] = overrides(c, "onMessage", String.class, Object.class);
+            ret[NEW_INTENT] = overrides(c, "onNewIntent", Intent.class);
+            ret[REMAP_URI] = overrides(c, "remapUri", Uri.class);
+            ret[RESET] = overrides(c, "onReset");
+            overriddenHooksByClass.put(c, ret);
+        }
+        return ret;
+    }
+
+    private static boolean overrides(Class<?> c, String name, Class<?>... parameterTypes) {
+        try {
+            return c.getMethod(name, parameterTypes).getDeclaringClass() != CordovaPlugin.class;
+        } catch (NoSuchMethodException e) {
+            // Can't happen for a CordovaPlugin, but calling it is the safe choice.
+            return true;
+        }
+    }
+}
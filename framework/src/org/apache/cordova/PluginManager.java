@@ -18,11 +18,14 @@
  */
 package org.apache.cordova;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map.Entry;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.cordova.CordovaArgs;
 import org.apache.cordova.CordovaWebView;
@@ -32,13 +35,14 @@ import org.apache.cordova.CordovaPlugin;
 import org.apache.cordova.PluginEntry;
 import org.apache.cordova.PluginResult;
 import org.json.JSONException;
-import org.xmlpull.v1.XmlPullParserException;
+import org.json.JSONObject;
 
 import android.content.Intent;
-import android.content.res.XmlResourceParser;
 
 import android.net.Uri;
 import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 /**
@@ -50,9 +54,13 @@ import android.util.Log;
 public class PluginManager {
     private static String TAG = "PluginManager";
     private static final int SLOW_EXEC_WARNING_THRESHOLD = Debug.isDebuggerConnected() ? 60 : 16;
+    private static final String EXEC_STATS_FILE_NAME = "exec-stats.json";
 
-    // List of service entries
-    private final HashMap<String, PluginEntry> entries = new HashMap<String, PluginEntry>();
+    // List of service entries, in config.xml order
+    private final HashMap<String, PluginEntry> entries = new LinkedHashMap<String, PluginEntry>();
+
+    // The created plugins, by which of the hooks below they override.
+    private final PluginHookLists hookLists = new PluginHookLists();
 
     private final CordovaInterface ctx;
     private final CordovaWebView app;
@@ -60,11 +68,22 @@ public class PluginManager {
     // Flag to track first time through
     private boolean firstRun;
 
-    // Map URL schemes like foo: to plugins that want to handle those schemes
+    // Map URL prefixes like foo: to plugins that want to handle those URLs
     // This would allow how all URLs are handled to be offloaded to a plugin
-    protected HashMap<String, String> urlMap = new HashMap<String, String>();
+    private volatile UrlFilterTrie urlFilters = new UrlFilterTrie();
+
+    // Callbacks that JS grants credits to. See CallbackContext.enableFlowControl().
+    private final ConcurrentHashMap<String, CallbackContext> flowControlledCallbacks = new ConcurrentHashMap<String, CallbackContext>();
+
+    private final ExecStats execStats = new ExecStats();
+
+    // Callbacks whose final result hasn't been sent yet. They are cancelled when the page changes.
+    private final ConcurrentHashMap<String, CallbackContext> pendingCallbacks = new ConcurrentHashMap<String, CallbackContext>();
 
-    private AtomicInteger numPendingUiExecs;
+    private final UploadStore uploadStore = new UploadStore();
+
+    // When each onload plugin was created during the last startupPlugins().
+    private volatile StartupTimeline startupTimeline;
 
     /**
      * Constructor.
@@ -76,7 +95,6 @@ public class PluginManager {
         this.ctx = ctx;
         this.app = app;
         this.firstRun = true;
-        this.numPendingUiExecs = new AtomicInteger(0);
     }
 
     /**
@@ -88,6 +106,7 @@ public class PluginManager {
         // If first time, then load plugins from config.xml file
         if (this.firstRun) {
             this.loadPlugins();
+            this.startExecStatsDumps();
             this.firstRun = false;
         }
 
@@ -109,61 +128,25 @@ public class PluginManager {
      * Load plugins from res/xml/config.xml
      */
     public void loadPlugins() {
-        int id = this.ctx.getActivity().getResources().getIdentifier("config", "xml", this.ctx.getActivity().getPackageName());
-        if (id == 0) {
+        CompiledConfig config = CompiledConfig.get(this.ctx.getActivity());
+        if (config == null) {
             this.pluginConfigurationMissing();
             //We have the error, we need to exit without crashing!
             return;
         }
-        XmlResourceParser xml = this.ctx.getActivity().getResources().getXml(id);
-        int eventType = -1;
-        String service = "", pluginClass = "", paramType = "";
-        boolean onload = false;
-        boolean insideFeature = false;
-        while (eventType != XmlResourceParser.END_DOCUMENT) {
-            if (eventType == XmlResourceParser.START_TAG) {
-                String strNode = xml.getName();
-                if (strNode.equals("url-filter")) {
-                    this.urlMap.put(xml.getAttributeValue(null, "value"), service);
-                }
-                else if (strNode.equals("feature")) {
-                    //Check for supported feature sets  aka. plugins (Accelerometer, Geolocation, etc)
-                    //Set the bit for reading params
-                    insideFeature = true;
-                    service = xml.getAttributeValue(null, "name");
-                }
-                else if (insideFeature && strNode.equals("param")) {
-                    paramType = xml.getAttributeValue(null, "name");
-                    if (paramType.equals("service")) // check if it is using the older service param
-                        service = xml.getAttributeValue(null, "value");
-                    else if (paramType.equals("package") || paramType.equals("android-package"))
-                        pluginClass = xml.getAttributeValue(null,"value");
-                    else if (paramType.equals("onload"))
-                        onload = "true".equals(xml.getAttributeValue(null, "value"));
+        UrlFilterTrie trie = new UrlFilterTrie();
+        for (CompiledConfig.Feature feature : config.features) {
+            PluginEntry entry = new PluginEntry(feature.service, feature.pluginClass, feature.onload);
+            entry.backgroundInit = feature.backgroundInit;
+            entry.onloadAfter = feature.onloadAfter;
+            this.addService(entry);
+            for (String urlFilter : feature.urlFilters) {
+                if (urlFilter != null) {
+                    trie.add(urlFilter, feature.service);
                 }
             }
-            else if (eventType == XmlResourceParser.END_TAG)
-            {
-                String strNode = xml.getName();
-                if (strNode.equals("feature") || strNode.equals("plugin"))
-                {
-                    PluginEntry entry = new PluginEntry(service, pluginClass, onload);
-                    this.addService(entry);
-
-                    //Empty the strings to prevent plugin loading bugs
-                    service = "";
-                    pluginClass = "";
-                    insideFeature = false;
-                }
-            }
-            try {
-                eventType = xml.next();
-            } catch (XmlPullParserException e) {
-                e.printStackTrace();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
         }
+        this.urlFilters = trie;
     }
 
     /**
@@ -171,18 +154,40 @@ public class PluginManager {
      */
     public void clearPluginObjects() {
         for (PluginEntry entry : this.entries.values()) {
-            entry.plugin = null;
+            synchronized (entry) {
+                entry.plugin = null;
+            }
         }
+        this.hookLists.clear();
     }
 
     /**
      * Create plugins objects that have onload set.
+     *
+     * Plugins are created in config.xml order, but after those listed in their
+     * onload-after param. When the ParallelPluginStartup preference is set, those
+     * with the background-init param are created on the thread pool, and may not
+     * be ready yet when this returns. Nor may the ones that wait for them, which
+     * are created on this thread once it is free.
      */
     public void startupPlugins() {
-        for (PluginEntry entry : this.entries.values()) {
-            if (entry.onload) {
-                entry.createPlugin(this.app, this.ctx);
+        StartupTimeline timeline = new StartupTimeline();
+        this.startupTimeline = timeline;
+        boolean parallel = "true".equals(app.getProperty("ParallelPluginStartup", "false"));
+        new PluginStartup(this, this.ctx, this.entries.values(), timeline, parallel).run();
+    }
+
+    /**
+     * Creates the entry's plugin if it hasn't been already, and adds it to the hook lists.
+     */
+    CordovaPlugin createPlugin(PluginEntry entry) {
+        synchronized (entry) {
+            boolean alreadyCreated = entry.plugin != null;
+            CordovaPlugin plugin = entry.createPlugin(this.app, this.ctx);
+            if (!alreadyCreated && plugin != null) {
+                this.hookLists.add(plugin);
             }
+            return plugin;
         }
     }
 
@@ -204,46 +209,153 @@ public class PluginManager {
      *                      plugin execute method.
      */
     public void exec(final String service, final String action, final String callbackId, final String rawArgs) {
-        if (numPendingUiExecs.get() > 0) {
-            numPendingUiExecs.getAndIncrement();
-            this.ctx.getActivity().runOnUiThread(new Runnable() {
-                public void run() {
-                    execHelper(service, action, callbackId, rawArgs);
-                    numPendingUiExecs.getAndDecrement();
-                }
-            });
-        } else {
-            execHelper(service, action, callbackId, rawArgs);
-        }
-    }
-
-    private void execHelper(final String service, final String action, final String callbackId, final String rawArgs) {
-        CordovaPlugin plugin = getPlugin(service);
+        // Looked up once, and used for both the plugin and its action table.
+        final PluginEntry entry = this.entries.get(service);
+        final CordovaPlugin plugin = entry == null ? null : getPlugin(entry);
         if (plugin == null) {
             Log.d(TAG, "exec() call to unknown plugin: " + service);
             PluginResult cr = new PluginResult(PluginResult.Status.CLASS_NOT_FOUND_EXCEPTION);
             app.sendPluginResult(cr, callbackId);
             return;
         }
+        final CallbackContext callbackContext = new CallbackContext(callbackId, app);
+        callbackContext.setEpoch(app.jsMessageQueue.getEpoch());
+        final ActionTable actionTable = entry.getActionTable(plugin);
+        final int actionId = actionTable.isEmpty() ? -1 : actionTable.resolve(action);
+        final String actionName = actionId == -1 ? action : actionTable.getName(actionId);
+        CordovaPlugin.ExecutionThread executionThread = plugin.getExecutionThread(actionName);
+        if (executionThread == null || executionThread == CordovaPlugin.ExecutionThread.INLINE) {
+            execOnCurrentThread(plugin, actionTable, actionId, service, actionName, rawArgs, callbackContext, true);
+            return;
+        }
+        final boolean onUiThread = executionThread == CordovaPlugin.ExecutionThread.UI;
+        Runnable r = new Runnable() {
+            public void run() {
+                execOnCurrentThread(plugin, actionTable, actionId, service, actionName, rawArgs, callbackContext, onUiThread);
+            }
+        };
+        switch (executionThread) {
+            case UI:
+                ctx.getActivity().runOnUiThread(r);
+                break;
+            case BACKGROUND:
+                // Not subject to the pool's overflow policy, which could drop the call or run it on this thread.
+                try {
+                    InstrumentedThreadPoolExecutor.executeReliably(ctx.getThreadPool(), r);
+                } catch (RejectedExecutionException e) {
+                    // Only for a pool that the app supplied itself.
+                    Log.e(TAG, "Thread pool rejected exec() call to " + service + "." + actionName, e);
+                    callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.ERROR, "Thread pool is full"));
+                }
+                break;
+            case SERIAL:
+                entry.getSerialExecutor(ctx).execute(r);
+                break;
+        }
+    }
+
+    private void execOnCurrentThread(CordovaPlugin plugin, ActionTable actionTable, int actionId, String service, String action,
+            String rawArgs, CallbackContext callbackContext, boolean warnIfSlow) {
+        String callbackId = callbackContext.getCallbackId();
+        ExecStats.ActionStats stats = execStats.get(service, action);
         try {
-            CallbackContext callbackContext = new CallbackContext(callbackId, app);
-            long pluginStartTime = System.currentTimeMillis();
-            boolean wasValidAction = plugin.execute(action, rawArgs, callbackContext);
-            long duration = System.currentTimeMillis() - pluginStartTime;
+            long pluginStartTime = System.nanoTime();
+            callbackContext.setExecStats(stats, pluginStartTime);
+            boolean wasValidAction;
+            if (actionId != -1) {
+                wasValidAction = actionTable.invoke(plugin, actionId, new LazyCordovaArgs(rawArgs), callbackContext);
+            } else {
+                wasValidAction = plugin.execute(action, rawArgs, callbackContext);
+            }
+            long durationNanos = System.nanoTime() - pluginStartTime;
+            stats.executeMicros.record(durationNanos / 1000);
+            long duration = durationNanos / 1000000;
             
-            if (duration > SLOW_EXEC_WARNING_THRESHOLD) {
-                Log.w(TAG, "THREAD WARNING: exec() call to " + service + "." + action + " blocked the main thread for " + duration + "ms. Plugin should use CordovaInterface.getThreadPool().");
+            if (warnIfSlow && duration > SLOW_EXEC_WARNING_THRESHOLD) {
+                Log.w(TAG, "THREAD WARNING: exec() call to " + service + "." + action + " blocked the main thread for " + duration + "ms. Plugin should use CordovaInterface.getThreadPool() or getExecutionThread().");
+            }
+            if (wasValidAction && !callbackContext.isFinished() && !callbackContext.isCancelled()) {
+                pendingCallbacks.put(callbackId, callbackContext);
+                // The result may have been sent, or the call cancelled or timed out, in the meantime.
+                if (callbackContext.isFinished() || callbackContext.isCancelled()) {
+                    pendingCallbacks.remove(callbackId, callbackContext);
+                }
             }
             if (!wasValidAction) {
+                stats.invalidActionCount.incrementAndGet();
                 PluginResult cr = new PluginResult(PluginResult.Status.INVALID_ACTION);
                 app.sendPluginResult(cr, callbackId);
             }
         } catch (JSONException e) {
+            stats.errorCount.incrementAndGet();
             PluginResult cr = new PluginResult(PluginResult.Status.JSON_EXCEPTION);
             app.sendPluginResult(cr, callbackId);
         }
     }
 
+    /**
+     * Returns the timings of exec() calls, by service.action.
+     */
+    public ExecStats getExecStats() {
+        return execStats;
+    }
+
+    /**
+     * Returns the data that JS uploaded with cordova.require('cordova/exec').upload().
+     * Plugins receive the handle as a string argument. Each upload can be opened
+     * only once, and uploads that aren't opened are dropped when the page changes.
+     *
+     * @param handle        The handle that upload() returned.
+     * @return              The data, or null if the handle is unknown.
+     */
+    public InputStream openUpload(String handle) {
+        return uploadStore.open(handle);
+    }
+
+    UploadStore getUploadStore() {
+        return uploadStore;
+    }
+
+    // Writes exec stats every ExecStatsDumpInterval seconds while the activity is running.
+    private void startExecStatsDumps() {
+        final int intervalMillis = parseExecStatsDumpInterval(app.getProperty("ExecStatsDumpInterval", null)) * 1000;
+        if (intervalMillis <= 0) {
+            return;
+        }
+        final Handler handler = new Handler(Looper.getMainLooper());
+        handler.postDelayed(new Runnable() {
+            public void run() {
+                if (ctx.getActivity().isFinishing()) {
+                    return;
+                }
+                final File file = new File(ctx.getActivity().getFilesDir(), EXEC_STATS_FILE_NAME);
+                InstrumentedThreadPoolExecutor.executeReliably(ctx.getThreadPool(), new Runnable() {
+                    public void run() {
+                        try {
+                            execStats.writeTo(file);
+                        } catch (IOException e) {
+                            Log.e(TAG, "Failed to write exec stats to " + file, e);
+                        }
+                    }
+                });
+                handler.postDelayed(this, intervalMillis);
+            }
+        }, intervalMillis);
+    }
+
+    // Returns the interval in seconds, or 0 (disabled) if it isn't set or isn't a number.
+    private static int parseExecStatsDumpInterval(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Invalid ExecStatsDumpInterval: " + value);
+            return 0;
+        }
+    }
+
     @Deprecated
     public void exec(String service, String action, String callbackId, String jsonArgs, boolean async) {
         exec(service, action, callbackId, jsonArgs);
@@ -262,9 +374,13 @@ public class PluginManager {
         if (entry == null) {
             return null;
         }
+        return getPlugin(entry);
+    }
+
+    private CordovaPlugin getPlugin(PluginEntry entry) {
         CordovaPlugin plugin = entry.plugin;
         if (plugin == null) {
-            plugin = entry.createPlugin(this.app, this.ctx);
+            plugin = createPlugin(entry);
         }
         return plugin;
     }
@@ -288,7 +404,13 @@ public class PluginManager {
      * @param entry             The plugin entry
      */
     public void addService(PluginEntry entry) {
-        this.entries.put(entry.service, entry);
+        PluginEntry old = this.entries.put(entry.service, entry);
+        if (old != null && old.plugin != null) {
+            this.hookLists.remove(old.plugin);
+        }
+        if (entry.plugin != null) {
+            this.hookLists.add(entry.plugin);
+        }
     }
 
     /**
@@ -297,10 +419,8 @@ public class PluginManager {
      * @param multitasking      Flag indicating if multitasking is turned on for app
      */
     public void onPause(boolean multitasking) {
-        for (PluginEntry entry : this.entries.values()) {
-            if (entry.plugin != null) {
-                entry.plugin.onPause(multitasking);
-            }
+        for (CordovaPlugin plugin : this.hookLists.get(PluginHookLists.PAUSE)) {
+            plugin.onPause(multitasking);
         }
     }
 
@@ -310,10 +430,8 @@ public class PluginManager {
      * @param multitasking      Flag indicating if multitasking is turned on for app
      */
     public void onResume(boolean multitasking) {
-        for (PluginEntry entry : this.entries.values()) {
-            if (entry.plugin != null) {
-                entry.plugin.onResume(multitasking);
-            }
+        for (CordovaPlugin plugin : this.hookLists.get(PluginHookLists.RESUME)) {
+            plugin.onResume(multitasking);
         }
     }
 
@@ -321,10 +439,8 @@ public class PluginManager {
      * The final call you receive before your activity is destroyed.
      */
     public void onDestroy() {
-        for (PluginEntry entry : this.entries.values()) {
-            if (entry.plugin != null) {
-                entry.plugin.onDestroy();
-            }
+        for (CordovaPlugin plugin : this.hookLists.get(PluginHookLists.DESTROY)) {
+            plugin.onDestroy();
         }
     }
 
@@ -340,12 +456,10 @@ public class PluginManager {
         if (obj != null) {
             return obj;
         }
-        for (PluginEntry entry : this.entries.values()) {
-            if (entry.plugin != null) {
-                obj = entry.plugin.onMessage(id, data);
-                if (obj != null) {
-                    return obj;
-                }
+        for (CordovaPlugin plugin : this.hookLists.get(PluginHookLists.MESSAGE)) {
+            obj = plugin.onMessage(id, data);
+            if (obj != null) {
+                return obj;
             }
         }
         return null;
@@ -355,10 +469,8 @@ public class PluginManager {
      * Called when the activity receives a new intent.
      */
     public void onNewIntent(Intent intent) {
-        for (PluginEntry entry : this.entries.values()) {
-            if (entry.plugin != null) {
-                entry.plugin.onNewIntent(intent);
-            }
+        for (CordovaPlugin plugin : this.hookLists.get(PluginHookLists.NEW_INTENT)) {
+            plugin.onNewIntent(intent);
         }
     }
 
@@ -369,27 +481,93 @@ public class PluginManager {
      * @return                  Return false to allow the URL to load, return true to prevent the URL from loading.
      */
     public boolean onOverrideUrlLoading(String url) {
-        Iterator<Entry<String, String>> it = this.urlMap.entrySet().iterator();
-        while (it.hasNext()) {
-            HashMap.Entry<String, String> pairs = it.next();
-            if (url.startsWith(pairs.getKey())) {
-                return this.getPlugin(pairs.getValue()).onOverrideUrlLoading(url);
-            }
+        // When url-filters overlap, the longest one wins.
+        String service = this.urlFilters.match(url);
+        if (service == null) {
+            return false;
         }
-        return false;
+        CordovaPlugin plugin = this.getPlugin(service);
+        return plugin != null && plugin.onOverrideUrlLoading(url);
     }
 
     /**
      * Called when the app navigates or refreshes.
      */
     public void onReset() {
-        Iterator<PluginEntry> it = this.entries.values().iterator();
-        while (it.hasNext()) {
-            CordovaPlugin plugin = it.next().plugin;
-            if (plugin != null) {
-                plugin.onReset();
+        // Cancel first, so that plugins can tell which of their calls are gone.
+        for (CallbackContext callbackContext : this.pendingCallbacks.values()) {
+            callbackContext.cancel();
+        }
+        this.pendingCallbacks.clear();
+        for (CordovaPlugin plugin : this.hookLists.get(PluginHookLists.RESET)) {
+            plugin.onReset();
+        }
+        for (CallbackContext callbackContext : this.flowControlledCallbacks.values()) {
+            callbackContext.abortFlowControl();
+        }
+        this.flowControlledCallbacks.clear();
+        this.uploadStore.clear();
+    }
+
+    // Same as onReset(), but keeps the calls made in pageEpoch or later, and the
+    // uploads started after uploadMark.
+    private void resetOlderThan(int pageEpoch, int uploadMark) {
+        for (CallbackContext callbackContext : this.pendingCallbacks.values()) {
+            if (callbackContext.getEpoch() < pageEpoch) {
+                callbackContext.cancel();
+                this.pendingCallbacks.remove(callbackContext.getCallbackId(), callbackContext);
+            }
+        }
+        for (CordovaPlugin plugin : this.hookLists.get(PluginHookLists.RESET)) {
+            plugin.onReset();
+        }
+        for (CallbackContext callbackContext : this.flowControlledCallbacks.values()) {
+            if (callbackContext.getEpoch() < pageEpoch) {
+                callbackContext.abortFlowControl();
+                this.flowControlledCallbacks.remove(callbackContext.getCallbackId(), callbackContext);
             }
         }
+        this.uploadStore.clear(uploadMark);
+    }
+
+    void addFlowControlledCallback(CallbackContext callbackContext) {
+        this.flowControlledCallbacks.put(callbackContext.getCallbackId(), callbackContext);
+    }
+
+    void removeFlowControlledCallback(CallbackContext callbackContext) {
+        this.flowControlledCallbacks.remove(callbackContext.getCallbackId(), callbackContext);
+    }
+
+    /**
+     * Returns the number of calls that are waiting for their final result.
+     */
+    int getPendingCallbackCount() {
+        return this.pendingCallbacks.size();
+    }
+
+    void removePendingCallback(CallbackContext callbackContext) {
+        this.pendingCallbacks.remove(callbackContext.getCallbackId(), callbackContext);
+    }
+
+    private static void addThreadPoolStats(JSONObject stats, String name, ExecutorService pool) throws JSONException {
+        // Only pools created by CordovaActivity keep stats.
+        if (pool instanceof InstrumentedThreadPoolExecutor) {
+            stats.put(name, ((InstrumentedThreadPoolExecutor) pool).getStats());
+        }
+    }
+
+    /**
+     * Returns the credits and queue depth of each flow-controlled callback, by callbackId.
+     */
+    public JSONObject getFlowControlStats() throws JSONException {
+        JSONObject ret = new JSONObject();
+        for (CallbackContext callbackContext : this.flowControlledCallbacks.values()) {
+            JSONObject stats = new JSONObject();
+            stats.put("credits", callbackContext.getCredits());
+            stats.put("queueDepth", callbackContext.getQueueDepth());
+            ret.put(callbackContext.getCallbackId(), stats);
+        }
+        return ret;
     }
 
 
@@ -401,12 +579,10 @@ public class PluginManager {
     }
 
     Uri remapUri(Uri uri) {
-        for (PluginEntry entry : this.entries.values()) {
-            if (entry.plugin != null) {
-                Uri ret = entry.plugin.remapUri(uri);
-                if (ret != null) {
-                    return ret;
-                }
+        for (CordovaPlugin plugin : this.hookLists.get(PluginHookLists.REMAP_URI)) {
+            Uri ret = plugin.remapUri(uri);
+            if (ret != null) {
+                return ret;
             }
         }
         return null;
@@ -418,14 +594,107 @@ public class PluginManager {
             if ("startup".equals(action)) {
                 // The onPageStarted event of CordovaWebViewClient resets the queue of messages to be returned to javascript in response
                 // to exec calls. Since this event occurs on the UI thread and exec calls happen on the WebCore thread it is possible
-                // that onPageStarted occurs after exec calls have started happening on a new page, which can cause the message queue
-                // to be reset between the queuing of a new message and its retrieval by javascript. To avoid this from happening,
-                // javascript always sends a "startup" exec upon loading a new page which causes all future exec calls to happen on the UI
-                // thread (and hence after onPageStarted) until there are no more pending exec calls remaining.
-                numPendingUiExecs.getAndIncrement();
-                ctx.getActivity().runOnUiThread(new Runnable() {
+                // that onPageStarted occurs after exec calls have started happening on a new page. To keep that reset from dropping
+                // the new page's messages, javascript always sends a "startup" exec with its URL upon loading a new page, which starts
+                // a new epoch of messages. When it comes first, plugins are reset here instead of in onPageStarted.
+                if (app.jsMessageQueue.beginEpoch(args.isNull(0) ? null : args.getString(0))) {
+                    // Plugins expect onReset() on the UI thread, as from onPageStarted. By the time
+                    // it runs this page may have made calls of its own, so only older ones are reset.
+                    final int pageEpoch = app.jsMessageQueue.getEpoch();
+                    final int uploadMark = uploadStore.mark();
+                    ctx.getActivity().runOnUiThread(new Runnable() {
+                        public void run() {
+                            resetOlderThan(pageEpoch, uploadMark);
+                        }
+                    });
+                }
+                callbackContext.finishWithoutResult();
+                return true;
+            } else if ("ackBridgeProbe".equals(action)) {
+                // Sent by probes of the AdaptiveBridgeMode preference. See BridgeModeSelector.
+                app.jsMessageQueue.onBridgeProbeAcked(args.getInt(0));
+                callbackContext.finishWithoutResult();
+                return true;
+            } else if ("grantCredits".equals(action)) {
+                CallbackContext target = flowControlledCallbacks.get(args.getString(0));
+                if (target != null) {
+                    target.grantCredits(args.getInt(1));
+                }
+                callbackContext.finishWithoutResult();
+                return true;
+            } else if ("getFlowControlStats".equals(action)) {
+                callbackContext.success(getFlowControlStats());
+                return true;
+            } else if ("getBridgeStats".equals(action)) {
+                callbackContext.success(app.jsMessageQueue.getStats().toJSON());
+                return true;
+            } else if ("getActionIds".equals(action)) {
+                // Lets JS send "#<id>" instead of the action name. See CordovaAction.
+                String service = args.getString(0);
+                PluginEntry entry = entries.get(service);
+                CordovaPlugin plugin = getPlugin(service);
+                if (plugin == null) {
+                    callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.CLASS_NOT_FOUND_EXCEPTION));
+                } else {
+                    callbackContext.success(entry.getActionTable(plugin).toJSON());
+                }
+                return true;
+            } else if ("getExecStats".equals(action)) {
+                callbackContext.success(execStats.toJSON());
+                return true;
+            } else if ("resetExecStats".equals(action)) {
+                execStats.reset();
+                callbackContext.success();
+                return true;
+            } else if ("dumpExecStats".equals(action)) {
+                // Writes to the given file name, or to exec-stats.json, in the app's files directory.
+                final File file = StatsFiles.resolve(ctx.getActivity().getFilesDir(), args.optString(0), EXEC_STATS_FILE_NAME);
+                if (file == null) {
+                    callbackContext.error("Expected a file name, not a path");
+                    return true;
+                }
+                InstrumentedThreadPoolExecutor.executeReliably(ctx.getThreadPool(), new Runnable() {
+                    public void run() {
+                        try {
+                            execStats.writeTo(file);
+                            callbackContext.success(file.getAbsolutePath());
+                        } catch (IOException e) {
+                            Log.e(TAG, "Failed to write exec stats to " + file, e);
+                            callbackContext.error(e.getMessage());
+                        }
+                    }
+                });
+                return true;
+            } else if ("getStartupTimeline".equals(action)) {
+                StartupTimeline timeline = startupTimeline;
+                callbackContext.success(timeline == null ? new JSONObject() : timeline.toJSON());
+                return true;
+            } else if ("getThreadPoolStats".equals(action)) {
+                JSONObject stats = new JSONObject();
+                addThreadPoolStats(stats, "io", ctx.getThreadPool());
+                addThreadPoolStats(stats, "cpu", CordovaThreadPools.getCpuThreadPool(ctx));
+                callbackContext.success(stats);
+                return true;
+            } else if ("resetBridgeStats".equals(action)) {
+                app.jsMessageQueue.getStats().reset();
+                callbackContext.success();
+                return true;
+            } else if ("dumpBridgeStats".equals(action)) {
+                // Writes to the given file name, or to bridge-stats.json, in the app's files directory.
+                final File file = StatsFiles.resolve(ctx.getActivity().getFilesDir(), args.optString(0), "bridge-stats.json");
+                if (file == null) {
+                    callbackContext.error("Expected a file name, not a path");
+                    return true;
+                }
+                InstrumentedThreadPoolExecutor.executeReliably(ctx.getThreadPool(), new Runnable() {
                     public void run() {
-                        numPendingUiExecs.getAndDecrement();
+                        try {
+                            app.jsMessageQueue.getStats().writeTo(file);
+                            callbackContext.success(file.getAbsolutePath());
+                        } catch (IOException e) {
+                            Log.e(TAG, "Failed to write bridge stats to " + file, e);
+                            callbackContext.error(e.getMessage());
+                        }
                     }
                 });
                 return true;
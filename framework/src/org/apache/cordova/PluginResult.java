@@ -18,6 +18,9 @@
 */
 package org.apache.cordova;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -27,8 +30,15 @@ public class PluginResult {
     private final int status;
     private final int messageType;
     private boolean keepCallback = false;
+    private boolean coalescing = false;
     private String strMessage;
     private String encodedMessage;
+    private InputStream streamSource;
+    private ByteBuffer bufferSource;
+    // Set when sent through a flow-controlled CallbackContext, which tracks how many of its results are queued.
+    CallbackContext flowControlOwner;
+    // The epoch of the exec() that this is the result of, or -1 for the current one. See NativeToJsMessageQueue.
+    int epoch = -1;
 
     public PluginResult(Status status) {
         this(status, PluginResult.StatusMessages[status.ordinal()]);
@@ -79,11 +89,47 @@ public class PluginResult {
         this.messageType = binaryString ? MESSAGE_TYPE_BINARYSTRING : MESSAGE_TYPE_ARRAYBUFFER;
         this.encodedMessage = Base64.encodeToString(data, Base64.NO_WRAP);
     }
+
+    public PluginResult(Status status, byte[] data, int offset, int length) {
+        this.status = status.ordinal();
+        this.messageType = MESSAGE_TYPE_ARRAYBUFFER;
+        this.encodedMessage = Base64.encodeToString(data, offset, length, Base64.NO_WRAP);
+    }
+
+    /**
+     * Creates a result whose data is read from the stream a chunk at a time, so
+     * that it never has to be held in memory all at once. JS receives each chunk
+     * as an ArrayBuffer in its own callback. Every chunk but the last is sent
+     * with keepCallback set, and the last one uses this result's keepCallback.
+     * The stream is closed once it has been read.
+     */
+    public PluginResult(Status status, InputStream stream) {
+        this.status = status.ordinal();
+        this.messageType = MESSAGE_TYPE_STREAM;
+        this.streamSource = stream;
+    }
+
+    /**
+     * Same as PluginResult(Status, InputStream), but delivers the remaining bytes of the buffer.
+     */
+    public PluginResult(Status status, ByteBuffer buffer) {
+        this.status = status.ordinal();
+        this.messageType = MESSAGE_TYPE_STREAM;
+        this.bufferSource = buffer;
+    }
     
     public void setKeepCallback(boolean b) {
         this.keepCallback = b;
     }
 
+    /**
+     * When set on a keepCallback result, the result may replace an older keepCallback
+     * result for the same callbackId that has not yet been sent to JS.
+     */
+    public void setCoalescing(boolean b) {
+        this.coalescing = b;
+    }
+
     public int getStatus() {
         return status;
     }
@@ -99,6 +145,22 @@ public class PluginResult {
         return encodedMessage;
     }
 
+    /**
+     * If messageType == MESSAGE_TYPE_STREAM, then returns the stream, if any.
+     * Otherwise, returns null.
+     */
+    public InputStream getStreamSource() {
+        return streamSource;
+    }
+
+    /**
+     * If messageType == MESSAGE_TYPE_STREAM, then returns the buffer, if any.
+     * Otherwise, returns null.
+     */
+    public ByteBuffer getBufferSource() {
+        return bufferSource;
+    }
+
     /**
      * If messageType == MESSAGE_TYPE_STRING, then returns the message string.
      * Otherwise, returns null.
@@ -111,6 +173,10 @@ public class PluginResult {
         return this.keepCallback;
     }
 
+    public boolean getCoalescing() {
+        return this.coalescing;
+    }
+
     @Deprecated // Use sendPluginResult instead of sendJavascript.
     public String getJSONString() {
         return "{\"status\":" + this.status + ",\"message\":" + this.getMessage() + ",\"keepCallback\":" + this.keepCallback + "}";
@@ -150,6 +216,8 @@ public class PluginResult {
     // Use BINARYSTRING when your string may contain null characters.
     // This is required to work around a bug in the platform :(.
     public static final int MESSAGE_TYPE_BINARYSTRING = 7;
+    // Sent to JS as a series of MESSAGE_TYPE_ARRAYBUFFER results.
+    public static final int MESSAGE_TYPE_STREAM = 8;
 
     public static String[] StatusMessages = new String[] {
         "No result",
@@ -0,0 +1,247 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.PriorityQueue;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Creates the onload plugins, in config.xml order except where their onload-after
+ * params require otherwise.
+ *
+ * In parallel mode, plugins with the background-init param are created on the
+ * thread pool, and the rest on the calling thread. Plugins are started as soon
+ * as the ones that they depend on are done, so no thread ever waits on another.
+ * run() returns once the calling thread has created every plugin that it can
+ * without waiting. Those that depend on a background plugin are created later,
+ * through the calling thread's Looper (or the main one if it has none).
+ * PluginEntry.plugin is only set once the plugin is initialized, so exec()
+ * calls either find it ready, or call the synchronized createPlugin(), which
+ * waits for the thread that is creating it.
+ */
+class PluginStartup {
+    private static final String TAG = "PluginStartup";
+
+    private final PluginManager pluginManager;
+    private final CordovaInterface ctx;
+    private final StartupTimeline timeline;
+    private final boolean parallel;
+
+    // The position of each onload plugin in config.xml.
+    private final LinkedHashMap<PluginEntry, Integer> configOrder = new LinkedHashMap<PluginEntry, Integer>();
+
+    // Guarded by the lock on "this".
+    private final HashMap<PluginEntry, Integer> numPendingDeps = new HashMap<PluginEntry, Integer>();
+    private final HashMap<PluginEntry, ArrayList<PluginEntry>> dependents = new HashMap<PluginEntry, ArrayList<PluginEntry>>();
+    // Plugins that are ready to be created on the calling thread, earliest in config.xml first.
+    private final PriorityQueue<PluginEntry> readyOnCallingThread;
+
+    private Thread callingThread;
+    private Handler callingThreadHandler;
+
+    /**
+     * @param entries       All plugin entries, in config.xml order.
+     */
+    PluginStartup(PluginManager pluginManager, CordovaInterface ctx, Collection<PluginEntry> entries, StartupTimeline timeline, boolean parallel) {
+        this.pluginManager = pluginManager;
+        this.ctx = ctx;
+        this.timeline = timeline;
+        this.parallel = parallel;
+
+        LinkedHashMap<String, PluginEntry> onloadEntries = new LinkedHashMap<String, PluginEntry>();
+        for (PluginEntry entry : entries) {
+            if (entry.onload) {
+                onloadEntries.put(entry.service, entry);
+            }
+        }
+        for (PluginEntry entry : onloadEntries.values()) {
+            configOrder.put(entry, configOrder.size());
+        }
+        readyOnCallingThread = new PriorityQueue<PluginEntry>(Math.max(1, configOrder.size()), new Comparator<PluginEntry>() {
+            public int compare(PluginEntry a, PluginEntry b) {
+                return configOrder.get(a) - configOrder.get(b);
+            }
+        });
+        for (PluginEntry entry : onloadEntries.values()) {
+            int count = 0;
+            for (String service : entry.onloadAfter) {
+                PluginEntry dep = onloadEntries.get(service);
+                if (dep == null) {
+                    // Plugins without onload are created when first used, so there's nothing to wait for.
+                    LOG.w(TAG, entry.service + " has onload-after " + service + ", which isn't an onload plugin");
+                    continue;
+                }
+                getDependents(dep).add(entry);
+                count += 1;
+            }
+            numPendingDeps.put(entry, count);
+        }
+        breakCycles();
+    }
+
+    private ArrayList<PluginEntry> getDependents(PluginEntry entry) {
+        ArrayList<PluginEntry> ret = dependents.get(entry);
+        if (ret == null) {
+            ret = new ArrayList<PluginEntry>();
+            dependents.put(entry, ret);
+        }
+        return ret;
+    }
+
+    // Drops the dependencies of plugins that are part of, or depend on, a cycle.
+    private void breakCycles() {
+        HashMap<PluginEntry, Integer> remaining = new HashMap<PluginEntry, Integer>(numPendingDeps);
+        LinkedList<PluginEntry> ready = new LinkedList<PluginEntry>();
+        for (PluginEntry entry : remaining.keySet()) {
+            if (remaining.get(entry) == 0) {
+                ready.add(entry);
+            }
+        }
+        while (!ready.isEmpty()) {
+            PluginEntry entry = ready.poll();
+            remaining.remove(entry);
+            ArrayList<PluginEntry> deps = dependents.get(entry);
+            if (deps != null) {
+                for (PluginEntry dependent : deps) {
+                    int count = remaining.get(dependent) - 1;
+                    remaining.put(dependent, count);
+                    if (count == 0) {
+                        ready.add(dependent);
+                    }
+                }
+            }
+        }
+        if (remaining.isEmpty()) {
+            return;
+        }
+        // Everything that depends on a plugin in the cycle is also left over.
+        for (PluginEntry entry : remaining.keySet()) {
+            LOG.w(TAG, "Ignoring onload-after of " + entry.service + " due to a dependency cycle");
+            numPendingDeps.put(entry, 0);
+        }
+        for (ArrayList<PluginEntry> deps : dependents.values()) {
+            Iterator<PluginEntry> it = deps.iterator();
+            while (it.hasNext()) {
+                if (remaining.containsKey(it.next())) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the plugins. Returns once the calling thread has created all of
+     * those that it can without waiting for a background plugin.
+     */
+    void run() {
+        callingThread = Thread.currentThread();
+        Looper looper = Looper.myLooper();
+        callingThreadHandler = new Handler(looper != null ? looper : Looper.getMainLooper());
+        ArrayList<PluginEntry> initiallyReady = new ArrayList<PluginEntry>();
+        synchronized (this) {
+            for (PluginEntry entry : configOrder.keySet()) {
+                if (numPendingDeps.get(entry) == 0) {
+                    initiallyReady.add(entry);
+                }
+            }
+        }
+        for (PluginEntry entry : initiallyReady) {
+            schedule(entry);
+        }
+        createReadyOnCallingThread();
+    }
+
+    private boolean runsInBackground(PluginEntry entry) {
+        return parallel && entry.backgroundInit;
+    }
+
+    private void schedule(final PluginEntry entry) {
+        if (runsInBackground(entry)) {
+            InstrumentedThreadPoolExecutor.executeReliably(ctx.getThreadPool(), new Runnable() {
+                public void run() {
+                    create(entry);
+                }
+            });
+            return;
+        }
+        synchronized (this) {
+            readyOnCallingThread.add(entry);
+        }
+        if (Thread.currentThread() != callingThread) {
+            // The calling thread may have moved on, so continue there once it's free.
+            callingThreadHandler.post(new Runnable() {
+                public void run() {
+                    createReadyOnCallingThread();
+                }
+            });
+        }
+        // Otherwise this is within createReadyOnCallingThread(), which picks it up.
+    }
+
+    private void createReadyOnCallingThread() {
+        while (true) {
+            PluginEntry entry;
+            synchronized (this) {
+                entry = readyOnCallingThread.poll();
+            }
+            if (entry == null) {
+                return;
+            }
+            create(entry);
+        }
+    }
+
+    private void create(PluginEntry entry) {
+        long startNanos = System.nanoTime();
+        try {
+            pluginManager.createPlugin(entry);
+        } finally {
+            timeline.record(entry.service, startNanos, System.nanoTime());
+            onCreated(entry);
+        }
+    }
+
+    private void onCreated(PluginEntry entry) {
+        ArrayList<PluginEntry> nowReady = new ArrayList<PluginEntry>();
+        synchronized (this) {
+            ArrayList<PluginEntry> deps = dependents.get(entry);
+            if (deps != null) {
+                for (PluginEntry dependent : deps) {
+                    int count = numPendingDeps.get(dependent) - 1;
+                    numPendingDeps.put(dependent, count);
+                    if (count == 0) {
+                        nowReady.add(dependent);
+                    }
+                }
+            }
+        }
+        for (PluginEntry dependent : nowReady) {
+            schedule(dependent);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks one at a time, in the order they were added, on threads borrowed
+ * from another Executor. No thread is tied up while there is nothing to run.
+ */
+class SerialExecutor implements Executor {
+    private final Executor executor;
+    // Guarded by the lock on "this".
+    private final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+    private boolean running;
+
+    SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public void execute(Runnable task) {
+        synchronized (this) {
+            tasks.add(task);
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+        // If this were dropped, running would stay true and nothing would run again.
+        InstrumentedThreadPoolExecutor.executeReliably(executor, new Runnable() {
+            public void run() {
+                runTasks();
+            }
+        });
+    }
+
+    private void runTasks() {
+        while (true) {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.poll();
+                if (task == null) {
+                    running = false;
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // Keep going, so that one failure doesn't stall everything queued after it.
+                LOG.e("SerialExecutor", "Task threw an exception", e);
+            }
+        }
+    }
+}
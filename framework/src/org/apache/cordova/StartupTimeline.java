@@ -0,0 +1,79 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import java.util.ArrayList;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Records when each onload plugin was created during PluginManager.startupPlugins(),
+ * relative to the start of startup, and on which thread.
+ */
+class StartupTimeline {
+    private static class Event {
+        final String service;
+        final String thread;
+        final long startNanos;
+        final long endNanos;
+
+        Event(String service, String thread, long startNanos, long endNanos) {
+            this.service = service;
+            this.thread = thread;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+        }
+    }
+
+    private final long originNanos = System.nanoTime();
+    // Guarded by the lock on "this".
+    private final ArrayList<Event> events = new ArrayList<Event>();
+    private long endNanos;
+
+    void record(String service, long startNanos, long endNanos) {
+        Event event = new Event(service, Thread.currentThread().getName(), startNanos, endNanos);
+        LOG.d("StartupTimeline", "Created " + service + " in " + ((endNanos - startNanos) / 1000) + "us on " + event.thread);
+        synchronized (this) {
+            events.add(event);
+            this.endNanos = Math.max(this.endNanos, endNanos);
+        }
+    }
+
+    /**
+     * Returns {totalMicros, plugins: [{service, thread, startMicros, endMicros}]},
+     * where plugins are in the order that they finished.
+     */
+    synchronized JSONObject toJSON() throws JSONException {
+        JSONArray plugins = new JSONArray();
+        for (Event event : events) {
+            JSONObject o = new JSONObject();
+            o.put("service", event.service);
+            o.put("thread", event.thread);
+            o.put("startMicros", (event.startNanos - originNanos) / 1000);
+            o.put("endMicros", (event.endNanos - originNanos) / 1000);
+            plugins.put(o);
+        }
+        JSONObject ret = new JSONObject();
+        ret.put("totalMicros", events.isEmpty() ? 0 : (endNanos - originNanos) / 1000);
+        ret.put("plugins", plugins);
+        return ret;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Writes the JSON of ExecStats and BridgeStats to files that can be pulled with adb.
+ */
+final class StatsFiles {
+    private StatsFiles() {
+    }
+
+    /**
+     * Returns the file with the given name in dir (the app's files directory), or
+     * the default one if name is empty. Returns null if name isn't a plain file
+     * name, since it comes from JS and must not reach outside that directory.
+     */
+    static File resolve(File dir, String name, String defaultName) {
+        if (name == null || name.length() == 0) {
+            name = defaultName;
+        }
+        if (name.indexOf('/') >= 0 || name.indexOf('\\') >= 0 || name.indexOf('\0') >= 0 || name.equals(".") || name.equals("..")) {
+            return null;
+        }
+        return new File(dir, name);
+    }
+
+    static void write(File file, JSONObject stats) throws IOException, JSONException {
+        String json = stats.toString(2);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(json);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds binary data that JS uploaded with cordova.require('cordova/exec').upload(),
+ * until the plugin that it was passed to opens it.
+ *
+ * Data arrives as "binary strings", where each char holds one byte. This avoids
+ * both the Base64 inflation and the JSON parsing that ArrayBuffers within exec()
+ * arguments go through. Since some versions of the bridge truncate strings at
+ * '\0', JS sends zero bytes as 0x100; only the low 8 bits of each char are kept.
+ */
+class UploadStore {
+    private final ConcurrentHashMap<String, Buffer> uploads = new ConcurrentHashMap<String, Buffer>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    // Gives access to the backing array so that it can be read without a copy.
+    private static class Buffer extends ByteArrayOutputStream {
+        final int id;
+
+        Buffer(int id) {
+            this.id = id;
+        }
+
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+
+    /**
+     * Appends a chunk of data to the given upload. An empty or null handle starts
+     * a new upload. Returns the handle, or null if it isn't a known one.
+     */
+    String append(String handle, String chunk) {
+        Buffer buffer;
+        if (handle == null || handle.length() == 0) {
+            int id = nextId.incrementAndGet();
+            handle = "upload" + id;
+            buffer = new Buffer(id);
+            uploads.put(handle, buffer);
+        } else {
+            buffer = uploads.get(handle);
+            if (buffer == null) {
+                return null;
+            }
+        }
+        int len = chunk.length();
+        byte[] bytes = new byte[len];
+        for (int i = 0; i < len; ++i) {
+            bytes[i] = (byte) chunk.charAt(i);
+        }
+        synchronized (buffer) {
+            buffer.write(bytes, 0, len);
+        }
+        return handle;
+    }
+
+    /**
+     * Returns the data of the given upload and forgets about it, so that each
+     * upload can be opened only once. Returns null if the handle is unknown.
+     */
+    InputStream open(String handle) {
+        Buffer buffer = handle == null ? null : uploads.remove(handle);
+        if (buffer == null) {
+            return null;
+        }
+        synchronized (buffer) {
+            return buffer.toInputStream();
+        }
+    }
+
+    /**
+     * Returns a mark that clear() can use to drop only the uploads started before now.
+     */
+    int mark() {
+        return nextId.get();
+    }
+
+    /**
+     * Drops all uploads, e.g. those that the previous page never passed to a plugin.
+     */
+    void clear() {
+        uploads.clear();
+    }
+
+    /**
+     * Drops the uploads that were started before mark() returned the given value.
+     */
+    void clear(int mark) {
+        Iterator<Buffer> it = uploads.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().id <= mark) {
+                it.remove();
+            }
+        }
+    }
+}
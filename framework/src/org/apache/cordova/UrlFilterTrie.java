@@ -0,0 +1,94 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import java.util.Arrays;
+
+/**
+ * Maps the url-filter prefixes of config.xml to the services that registered them.
+ *
+ * A lookup walks the URL once, so its cost depends on the length of the URL and
+ * not on the number of filters, and it returns the service of the longest
+ * matching prefix.
+ */
+class UrlFilterTrie {
+    private static class Node {
+        // Sorted, and parallel to children.
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        // Non-null if a prefix ends here.
+        String service;
+
+        Node getChild(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i < 0 ? null : children[i];
+        }
+
+        Node getOrAddChild(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int insertAt = -i - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newKeys[insertAt] = c;
+            newChildren[insertAt] = new Node();
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[insertAt];
+        }
+    }
+
+    private final Node root = new Node();
+
+    /**
+     * Routes URLs that start with prefix to service. Replaces any earlier service
+     * for the same prefix. Not thread-safe; the trie is filled in before it's used.
+     */
+    void add(String prefix, String service) {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); ++i) {
+            node = node.getOrAddChild(prefix.charAt(i));
+        }
+        node.service = service;
+    }
+
+    /**
+     * Returns the service of the longest prefix of url, or null if none match.
+     */
+    String match(String url) {
+        Node node = root;
+        String ret = node.service;
+        for (int i = 0; i < url.length(); ++i) {
+            node = node.getChild(url.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.service != null) {
+                ret = node.service;
+            }
+        }
+        return ret;
+    }
+}
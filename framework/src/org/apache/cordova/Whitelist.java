@@ -21,6 +21,8 @@ package org.apache.cordova;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -94,6 +96,18 @@ public class Whitelist {
 
     private ArrayList<URLPattern> whiteList;
 
+    private static final int MAX_CACHED_RESULTS = 16;
+
+    // Results for the URLs that were checked most recently. Every exec() over the
+    // prompt bridge checks the URL of the page, so a handful of URLs cover
+    // nearly all checks. Guarded by the lock on "this", as is whiteList.
+    private final LinkedHashMap<String, Boolean> cachedResults = new LinkedHashMap<String, Boolean>(MAX_CACHED_RESULTS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_CACHED_RESULTS;
+        }
+    };
+
     public static final String TAG = "Whitelist";
 
     public Whitelist() {
@@ -111,7 +125,7 @@ public class Whitelist {
      * the scheme to be omitted for backwards compatibility. (Also host is not required
      * to begin with a "*" or "*.".)
      */
-    public void addWhiteListEntry(String origin, boolean subdomains) {
+    public synchronized void addWhiteListEntry(String origin, boolean subdomains) {
         if (whiteList != null) {
             try {
                 // Unlimited access to network resources
@@ -142,6 +156,8 @@ public class Whitelist {
                 LOG.d(TAG, "Failed to add origin %s", origin);
             }
         }
+        // Cleared after the change, so no result from before it survives.
+        cachedResults.clear();
     }
 
 
@@ -151,20 +167,27 @@ public class Whitelist {
      * @param uri
      * @return
      */
-    public boolean isUrlWhiteListed(String uri) {
+    public synchronized boolean isUrlWhiteListed(String uri) {
         // If there is no whitelist, then it's wide open
         if (whiteList == null) return true;
 
+        Boolean cached = cachedResults.get(uri);
+        if (cached != null) {
+            return cached;
+        }
+        boolean ret = false;
         Uri parsedUri = Uri.parse(uri);
         // Look for match in white list
         Iterator<URLPattern> pit = whiteList.iterator();
         while (pit.hasNext()) {
             URLPattern p = pit.next();
             if (p.matches(parsedUri)) {
-                return true;
+                ret = true;
+                break;
             }
         }
-        return false;
+        cachedResults.put(uri, ret);
+        return ret;
     }
 
 }
@@ -0,0 +1,157 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+
+// Number of sequential echo() round trips timed per configuration.
+var ROUND_TRIPS = 300;
+// Number of results sent back by a single burst() call.
+var BURST_SIZE = 2000;
+var PAYLOAD = new Array(65).join('x');
+// A configuration that hasn't finished by then is reported without numbers
+// (e.g. PRIVATE_API on a WebView without the private API).
+var CONFIG_TIMEOUT = 20000;
+
+var now = window.performance && window.performance.now ? function() { return window.performance.now(); } : Date.now;
+
+function setStatus(text) {
+    document.getElementById('status').innerHTML = text;
+}
+
+function percentile(sorted, p) {
+    return sorted[Math.min(sorted.length - 1, Math.floor(sorted.length * p))];
+}
+
+function buildConfigs(exec) {
+    var modes = exec.nativeToJsModes;
+    var configs = [];
+    [modes.POLLING, modes.LOAD_URL, modes.ONLINE_EVENT, modes.PRIVATE_API].forEach(function(mode) {
+        [false, true].forEach(function(forceEncodeUsingEval) {
+            [false, true].forEach(function(disableExecChaining) {
+                configs.push({
+                    nativeToJsMode: mode,
+                    forceEncodeUsingEval: forceEncodeUsingEval,
+                    disableExecChaining: disableExecChaining
+                });
+            });
+        });
+    });
+    return configs;
+}
+
+// Times ROUND_TRIPS sequential echo() calls, then one burst() of BURST_SIZE results.
+function runWorkload(exec, row, done) {
+    var latencies = [];
+    function fail(e) {
+        done('failed: ' + e);
+    }
+    function echoOnce() {
+        if (latencies.length == ROUND_TRIPS) {
+            runBurst();
+            return;
+        }
+        var start = now();
+        exec(function() {
+            latencies.push(now() - start);
+            echoOnce();
+        }, fail, 'BridgeBenchmark', 'echo', [PAYLOAD]);
+    }
+    function runBurst() {
+        var received = 0;
+        var start = now();
+        exec(function() {
+            received += 1;
+            if (received == BURST_SIZE) {
+                row.messagesPerSec = Math.round(BURST_SIZE * 1000 / (now() - start));
+                latencies.sort(function(a, b) { return a - b; });
+                row.p50 = percentile(latencies, 0.5).toFixed(2);
+                row.p99 = percentile(latencies, 0.99).toFixed(2);
+                done();
+            }
+        }, fail, 'BridgeBenchmark', 'burst', [BURST_SIZE, PAYLOAD]);
+    }
+    echoOnce();
+}
+
+function runConfig(exec, config, done) {
+    var row = {
+        nativeToJsMode: config.nativeToJsMode,
+        forceEncodeUsingEval: config.forceEncodeUsingEval,
+        disableExecChaining: config.disableExecChaining
+    };
+    var finished = false;
+    function finish(error) {
+        if (!finished) {
+            finished = true;
+            if (error) {
+                console.log('Bridge benchmark configuration ' + JSON.stringify(config) + ' ' + error);
+            }
+            done(row);
+        }
+    }
+    var timer = window.setTimeout(function() { finish('timed out'); }, CONFIG_TIMEOUT);
+    exec.setNativeToJsBridgeMode(config.nativeToJsMode);
+    exec(function() {
+        runWorkload(exec, row, function(error) {
+            window.clearTimeout(timer);
+            finish(error);
+        });
+    }, function(e) {
+        finish('could not set bridge options: ' + e);
+    }, 'App', 'setBridgeOptions', [{
+        forceEncodeUsingEval: config.forceEncodeUsingEval,
+        disableExecChaining: config.disableExecChaining
+    }]);
+}
+
+function addResultRow(row) {
+    var tr = document.createElement('tr');
+    [row.nativeToJsMode, row.forceEncodeUsingEval, !row.disableExecChaining,
+     row.messagesPerSec, row.p50, row.p99].forEach(function(value) {
+        var td = document.createElement('td');
+        td.innerHTML = value === undefined ? '-' : String(value);
+        tr.appendChild(td);
+    });
+    document.getElementById('results').appendChild(tr);
+}
+
+function runBenchmark() {
+    var exec = cordova.require('cordova/exec');
+    var configs = buildConfigs(exec);
+    var rows = [];
+    function next() {
+        if (rows.length == configs.length) {
+            // Put things back the way they were.
+            exec.setNativeToJsBridgeMode(exec.nativeToJsModes.ONLINE_EVENT);
+            exec(function() {
+                setStatus('Done.');
+                exec(null, null, 'BridgeBenchmark', 'report', [rows]);
+            }, null, 'App', 'setBridgeOptions', [{ forceEncodeUsingEval: false, disableExecChaining: false }]);
+            return;
+        }
+        setStatus('Running ' + (rows.length + 1) + ' of ' + configs.length + '...');
+        runConfig(exec, configs[rows.length], function(row) {
+            rows.push(row);
+            addResultRow(row);
+            // Let any stragglers from the previous configuration drain first.
+            window.setTimeout(next, 100);
+        });
+    }
+    next();
+}
+
+document.addEventListener('deviceready', runBenchmark, false);
@@ -0,0 +1,161 @@
+package org.apache.cordova;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import junit.framework.TestCase;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import android.util.Log;
+
+// In org.apache.cordova since ActionTable is package-private.
+public class ActionTableTest extends TestCase {
+    private static final String TAG = "ActionTableTest";
+    private static final int BENCHMARK_CALLS = 200000;
+
+    private final CordovaArgs args = new CordovaArgs(new JSONArray());
+    private final CallbackContext callbackContext = new CallbackContext("id", null);
+
+    public void testUsesGeneratedDispatcher() throws JSONException {
+        ActionTable table = ActionTable.forClass(DispatchedPlugin.class);
+        DispatchedPlugin plugin = new DispatchedPlugin();
+        assertEquals(0, table.resolve("echo"));
+        assertEquals(1, table.resolve("isValid"));
+        assertTrue(table.invoke(plugin, table.resolve("echo"), args, callbackContext));
+        assertFalse(table.invoke(plugin, table.resolve("#1"), args, callbackContext));
+        assertEquals(2, plugin.calls);
+        assertEquals(2, plugin.dispatchedCalls);
+    }
+
+    public void testFallsBackToReflection() throws JSONException {
+        ActionTable table = ActionTable.forClass(ReflectedPlugin.class);
+        ReflectedPlugin plugin = new ReflectedPlugin();
+        assertEquals(0, table.resolve("echo"));
+        assertEquals(1, table.resolve("isValid"));
+        assertEquals(-1, table.resolve("other"));
+        assertTrue(table.invoke(plugin, table.resolve("echo"), args, callbackContext));
+        assertFalse(table.invoke(plugin, table.resolve("isValid"), args, callbackContext));
+        assertEquals(2, plugin.calls);
+    }
+
+    public void testInheritedActions() throws JSONException {
+        // The same names and ids that CordovaActionProcessor gives the class.
+        ActionTable table = ActionTable.forClass(SubclassPlugin.class);
+        assertEquals(0, table.resolve("check"));
+        assertEquals(1, table.resolve("echo"));
+        assertEquals(2, table.resolve("isValid"));
+        SubclassPlugin plugin = new SubclassPlugin();
+        // Overrides handle the action, whether or not they are annotated.
+        table.invoke(plugin, table.resolve("echo"), args, callbackContext);
+        assertEquals(1, plugin.overrideCalls);
+        assertTrue(table.invoke(plugin, table.resolve("isValid"), args, callbackContext));
+        assertTrue(table.invoke(plugin, table.resolve("check"), args, callbackContext));
+        assertEquals(3, plugin.overrideCalls);
+        assertEquals(0, plugin.calls);
+    }
+
+    public void testTableIsBuiltOncePerClass() {
+        assertSame(ActionTable.forClass(ReflectedPlugin.class), ActionTable.forClass(ReflectedPlugin.class));
+        PluginEntry entry = new PluginEntry("Test", new ReflectedPlugin());
+        assertSame(ActionTable.forClass(ReflectedPlugin.class), entry.getActionTable(new ReflectedPlugin()));
+        assertSame(ActionTable.forClass(DispatchedPlugin.class), entry.getActionTable(new DispatchedPlugin()));
+    }
+
+    public void testDispatchBenchmark() throws JSONException {
+        long dispatchedNanos = timeCalls(ActionTable.forClass(DispatchedPlugin.class), new DispatchedPlugin());
+        long reflectedNanos = timeCalls(ActionTable.forClass(ReflectedPlugin.class), new ReflectedPlugin());
+        Log.i(TAG, BENCHMARK_CALLS + " calls took " + (dispatchedNanos / 1000000) + "ms through the dispatcher, "
+                + (reflectedNanos / 1000000) + "ms through reflection");
+        assertTrue("Dispatcher took " + dispatchedNanos + "ns, reflection " + reflectedNanos + "ns",
+                dispatchedNanos <= reflectedNanos);
+    }
+
+    private long timeCalls(ActionTable table, CordovaPlugin plugin) throws JSONException {
+        int id = table.resolve("echo");
+        // Warm up, so that neither is measured before it's compiled.
+        for (int i = 0; i < BENCHMARK_CALLS; ++i) {
+            table.invoke(plugin, id, args, callbackContext);
+        }
+        long startTime = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_CALLS; ++i) {
+            table.invoke(plugin, id, args, callbackContext);
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    public static class ReflectedPlugin extends CordovaPlugin {
+        int calls;
+
+        @CordovaAction
+        public void echo(CordovaArgs args, CallbackContext callbackContext) {
+            calls += 1;
+        }
+
+        @CordovaAction("isValid")
+        public boolean valid(CordovaArgs args, CallbackContext callbackContext) {
+            calls += 1;
+            return false;
+        }
+    }
+
+    public static class SubclassPlugin extends ReflectedPlugin {
+        int overrideCalls;
+
+        @Override
+        public void echo(CordovaArgs args, CallbackContext callbackContext) {
+            overrideCalls += 1;
+        }
+
+        @Override
+        @CordovaAction("check")
+        public boolean valid(CordovaArgs args, CallbackContext callbackContext) {
+            overrideCalls += 1;
+            return true;
+        }
+    }
+
+    public static class DispatchedPlugin extends ReflectedPlugin {
+        int dispatchedCalls;
+    }
+}
+
+// Stands in for what CordovaActionProcessor generates, since the tests aren't built with it.
+final class ActionTableTest$DispatchedPlugin$$CordovaActions implements ActionDispatcher {
+    public String[] getActionNames() {
+        return new String[] { "echo", "isValid" };
+    }
+
+    public boolean invoke(CordovaPlugin plugin, int id, CordovaArgs args, CallbackContext callbackContext) throws JSONException {
+        ActionTableTest.DispatchedPlugin p = (ActionTableTest.DispatchedPlugin) plugin;
+        p.dispatchedCalls += 1;
+        switch (id) {
+            case 0:
+                p.echo(args, callbackContext);
+                return true;
+            case 1:
+                return p.valid(args, callbackContext);
+            default:
+                return false;
+        }
+    }
+}
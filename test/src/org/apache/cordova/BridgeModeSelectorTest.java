@@ -0,0 +1,124 @@
+package org.apache.cordova;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.test.AndroidTestCase;
+
+// In org.apache.cordova since BridgeModeSelector is package-private.
+public class BridgeModeSelectorTest extends AndroidTestCase {
+    private static final String PREFS_NAME = "org.apache.cordova.BridgeModeSelector";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        clearPrefs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        clearPrefs();
+        super.tearDown();
+    }
+
+    private void clearPrefs() {
+        getContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit().clear().commit();
+    }
+
+    // Runs posted work right away, so that decisions are saved before the next test starts.
+    private static class ImmediateHandler extends Handler {
+        ImmediateHandler() {
+            super(Looper.getMainLooper());
+        }
+
+        @Override
+        public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+            msg.getCallback().run();
+            return true;
+        }
+    }
+
+    private BridgeModeSelector newSelector() {
+        return new BridgeModeSelector(getContext(), CordovaWebView.WebViewBackend.ANDROID, new ImmediateHandler());
+    }
+
+    public void testSavedDecisionSkipsMeasuring() {
+        BridgeModeSelector selector = newSelector();
+        int mode;
+        while ((mode = selector.nextProbeMode()) != -1) {
+            selector.onProbeAcked(mode, mode == 3 ? 1000000 : 2000000);
+        }
+        selector = newSelector();
+        assertFalse(selector.isMeasuring());
+        assertEquals(3, selector.getSelectedMode());
+        // A saved mode that stops working is forgotten.
+        assertTrue(selector.onModeFailed(3));
+        assertTrue(newSelector().isMeasuring());
+    }
+
+    public void testProbesTakeTurnsBetweenModes() {
+        BridgeModeSelector selector = newSelector();
+        assertTrue(selector.isMeasuring());
+        assertEquals(2, selector.nextProbeMode());
+        assertEquals(3, selector.nextProbeMode());
+        assertEquals(1, selector.nextProbeMode());
+        assertEquals(2, selector.nextProbeMode());
+    }
+
+    public void testPicksLowestRoundTrip() {
+        BridgeModeSelector selector = newSelector();
+        boolean changed = false;
+        int mode;
+        while ((mode = selector.nextProbeMode()) != -1) {
+            // LoadUrl is fastest here, then PrivateApi.
+            long roundTripNanos = mode == 1 ? 1000000 : mode == 3 ? 2000000 : 3000000;
+            changed = selector.onProbeAcked(mode, roundTripNanos);
+        }
+        assertTrue(changed);
+        assertFalse(selector.isMeasuring());
+        assertEquals(1, selector.getSelectedMode());
+    }
+
+    public void testFailedModeIsSkipped() {
+        BridgeModeSelector selector = newSelector();
+        assertTrue(selector.onModeFailed(2));
+        assertEquals(3, selector.getSelectedMode());
+        int mode;
+        while ((mode = selector.nextProbeMode()) != -1) {
+            assertTrue(mode != 2);
+            selector.onProbeAcked(mode, mode == 3 ? 1000000 : 2000000);
+        }
+        assertEquals(3, selector.getSelectedMode());
+    }
+
+    public void testAllModesFailingFallsBackToPolling() {
+        BridgeModeSelector selector = newSelector();
+        selector.onModeFailed(2);
+        selector.onModeFailed(3);
+        selector.onModeFailed(1);
+        assertFalse(selector.isMeasuring());
+        assertEquals(0, selector.getSelectedMode());
+    }
+}
@@ -0,0 +1,148 @@
+package org.apache.cordova;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+// In org.apache.cordova since CompiledConfig is package-private.
+public class CompiledConfigTest extends TestCase {
+    private static final long[] KEY = { 42, 1234567890L };
+
+    private File file;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("cordova-config", ".bin");
+    }
+
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    private static CompiledConfig createConfig() {
+        ArrayList<CompiledConfig.Feature> features = new ArrayList<CompiledConfig.Feature>();
+        features.add(new CompiledConfig.Feature("App", "org.apache.cordova.App", true, false, new String[0], new String[0]));
+        features.add(new CompiledConfig.Feature("Camera", "org.apache.cordova.camera.CameraLauncher", true, true,
+                new String[] { "App" }, new String[] { "camera://", null }));
+        ArrayList<CompiledConfig.Access> accessEntries = new ArrayList<CompiledConfig.Access>();
+        accessEntries.add(new CompiledConfig.Access("http://example.com", true));
+        ArrayList<CompiledConfig.Preference> preferences = new ArrayList<CompiledConfig.Preference>();
+        preferences.add(new CompiledConfig.Preference("Fullscreen", "true"));
+        preferences.add(new CompiledConfig.Preference("Greeting", "h\u00e9llo"));
+        return new CompiledConfig(features, accessEntries, preferences, null, "file:///android_asset/www/index.html");
+    }
+
+    public void testRoundTrip() throws IOException {
+        createConfig().writeTo(file, KEY);
+        CompiledConfig config = CompiledConfig.readFrom(file, KEY);
+        assertNotNull(config);
+
+        assertEquals(2, config.features.size());
+        CompiledConfig.Feature app = config.features.get(0);
+        assertEquals("App", app.service);
+        assertEquals("org.apache.cordova.App", app.pluginClass);
+        assertTrue(app.onload);
+        assertFalse(app.backgroundInit);
+        assertEquals(0, app.onloadAfter.length);
+        assertEquals(0, app.urlFilters.length);
+        CompiledConfig.Feature camera = config.features.get(1);
+        assertEquals("Camera", camera.service);
+        assertTrue(camera.backgroundInit);
+        assertEquals(Arrays.asList("App"), Arrays.asList(camera.onloadAfter));
+        assertEquals(Arrays.asList("camera://", null), Arrays.asList(camera.urlFilters));
+
+        assertEquals(1, config.accessEntries.size());
+        assertEquals("http://example.com", config.accessEntries.get(0).origin);
+        assertTrue(config.accessEntries.get(0).subdomains);
+
+        assertEquals(2, config.preferences.size());
+        assertEquals("Fullscreen", config.preferences.get(0).name);
+        assertEquals("h\u00e9llo", config.preferences.get(1).value);
+
+        assertNull(config.logLevel);
+        assertEquals("file:///android_asset/www/index.html", config.startUrl);
+    }
+
+    public void testIgnoresOtherKeys() throws IOException {
+        createConfig().writeTo(file, KEY);
+        assertNull(CompiledConfig.readFrom(file, new long[] { KEY[0] + 1, KEY[1] }));
+        assertNull(CompiledConfig.readFrom(file, new long[] { KEY[0], KEY[1] + 1 }));
+    }
+
+    public void testRejectsHugeCount() throws IOException {
+        createConfig().writeTo(file, KEY);
+        // The feature count follows the magic, format version and key.
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(4 + 4 + 8 + 8);
+            raf.writeInt(Integer.MAX_VALUE);
+        } finally {
+            raf.close();
+        }
+        try {
+            CompiledConfig.readFrom(file, KEY);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+
+    public void testRejectsNegativeCount() throws IOException {
+        createConfig().writeTo(file, KEY);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(4 + 4 + 8 + 8);
+            raf.writeInt(-1);
+        } finally {
+            raf.close();
+        }
+        try {
+            CompiledConfig.readFrom(file, KEY);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+
+    public void testRejectsTruncatedFile() throws IOException {
+        createConfig().writeTo(file, KEY);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() - 3);
+        } finally {
+            raf.close();
+        }
+        try {
+            CompiledConfig.readFrom(file, KEY);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.apache.cordova;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import junit.framework.TestCase;
+
+// In org.apache.cordova since ExecStats.get() is package-private.
+public class ExecStatsTest extends TestCase {
+    public void testActionsPerServiceAreCapped() {
+        ExecStats stats = new ExecStats();
+        ExecStats.ActionStats first = stats.get("Service", "action0");
+        for (int i = 1; i < ExecStats.MAX_ACTIONS_PER_SERVICE; ++i) {
+            assertNotSame(first, stats.get("Service", "action" + i));
+        }
+        ExecStats.ActionStats other = stats.get("Service", "oneTooMany");
+        assertSame(other, stats.get("Service", "anotherTooMany"));
+        assertSame(other, stats.get("Service", ExecStats.OTHER_ACTIONS));
+        // Actions seen before the cap keep their own entries, and other services have their own cap.
+        assertSame(first, stats.get("Service", "action0"));
+        assertNotSame(stats.get("Other", "oneTooMany"), other);
+    }
+}
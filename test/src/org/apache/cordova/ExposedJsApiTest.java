@@ -0,0 +1,60 @@
+package org.apache.cordova;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import org.apache.cordova.test.actions.CordovaWebViewTestActivity;
+import org.json.JSONException;
+
+import android.test.ActivityInstrumentationTestCase2;
+
+// In org.apache.cordova since ExposedJsApi is package-private.
+public class ExposedJsApiTest extends ActivityInstrumentationTestCase2<CordovaWebViewTestActivity> {
+
+    public ExposedJsApiTest()
+    {
+        super(CordovaWebViewTestActivity.class);
+    }
+
+    private ExposedJsApi jsApi;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        jsApi = getActivity().cordovaWebView.exposedJsApi;
+    }
+
+    public void testExecBatchReturnsResultsInOrder() throws JSONException {
+        String ret = jsApi.execBatch("[[\"PluginManager\",\"getBridgeStats\",\"Batch1\",\"[]\"],"
+                + "[\"NoSuchService\",\"x\",\"Batch2\",\"[]\"],"
+                + "[\"PluginManager\",\"getFlowControlStats\",\"Batch3\",\"[]\"]]");
+        int first = ret.indexOf(" Batch1 ");
+        int second = ret.indexOf(" Batch2 ");
+        int third = ret.indexOf(" Batch3 ");
+        assertTrue(ret, first != -1);
+        // A call to an unknown service fails on its own, without stopping the batch.
+        assertTrue(ret, second > first);
+        assertTrue(ret, third > second);
+    }
+
+    public void testExecBatchWithNullArguments() throws JSONException {
+        assertEquals("@Null arguments.", jsApi.execBatch(null));
+    }
+}
@@ -0,0 +1,122 @@
+package org.apache.cordova;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import android.os.Process;
+
+// In org.apache.cordova since executeReliably() is package-private.
+public class InstrumentedThreadPoolExecutorTest extends TestCase {
+    private InstrumentedThreadPoolExecutor pool;
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private final Set<String> ran = Collections.synchronizedSet(new HashSet<String>());
+
+    protected void tearDown() throws Exception {
+        unblock.countDown();
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+        super.tearDown();
+    }
+
+    // Creates a pool with one thread, which is kept busy until unblock is counted down.
+    private void createBlockedPool(int queueCapacity, InstrumentedThreadPoolExecutor.OverflowPolicy policy) throws InterruptedException {
+        pool = new InstrumentedThreadPoolExecutor("test", 1, queueCapacity, Process.THREAD_PRIORITY_BACKGROUND, policy);
+        final CountDownLatch started = new CountDownLatch(1);
+        pool.execute(new Runnable() {
+            public void run() {
+                started.countDown();
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                }
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    private Runnable task(final String name, final CountDownLatch done) {
+        return new Runnable() {
+            public void run() {
+                ran.add(name + (Thread.currentThread().getName().startsWith("test-") ? "" : " on caller"));
+                if (done != null) {
+                    done.countDown();
+                }
+            }
+        };
+    }
+
+    public void testReliableTasksAreNeverRejected() throws InterruptedException {
+        createBlockedPool(1, InstrumentedThreadPoolExecutor.OverflowPolicy.ABORT);
+        CountDownLatch done = new CountDownLatch(5);
+        for (int i = 0; i < 5; ++i) {
+            InstrumentedThreadPoolExecutor.executeReliably(pool, task("reliable" + i, done));
+        }
+        try {
+            pool.execute(task("plain", null));
+            fail("Expected the full pool to reject a plain task");
+        } catch (RejectedExecutionException e) {
+        }
+        unblock.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; ++i) {
+            assertTrue(ran.contains("reliable" + i));
+        }
+    }
+
+    public void testReliableTasksAreNeverRunOnCaller() throws InterruptedException {
+        createBlockedPool(1, InstrumentedThreadPoolExecutor.OverflowPolicy.CALLER_RUNS);
+        CountDownLatch done = new CountDownLatch(3);
+        for (int i = 0; i < 3; ++i) {
+            InstrumentedThreadPoolExecutor.executeReliably(pool, task("reliable" + i, done));
+        }
+        // Nothing can have run yet: the only thread is busy.
+        assertTrue(ran.isEmpty());
+        unblock.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; ++i) {
+            assertTrue(ran.contains("reliable" + i));
+        }
+    }
+
+    public void testDiscardOldestSkipsReliableTasks() throws InterruptedException {
+        createBlockedPool(2, InstrumentedThreadPoolExecutor.OverflowPolicy.DISCARD_OLDEST);
+        CountDownLatch done = new CountDownLatch(2);
+        pool.execute(task("plain1", null));
+        InstrumentedThreadPoolExecutor.executeReliably(pool, task("reliable", done));
+        // Makes room by dropping plain1, not the older reliable task.
+        pool.execute(task("plain2", done));
+        unblock.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(ran.contains("reliable"));
+        assertTrue(ran.contains("plain2"));
+        assertFalse(ran.contains("plain1"));
+    }
+}
@@ -0,0 +1,108 @@
+package org.apache.cordova;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+// In org.apache.cordova since MpscRingBuffer is package-private.
+public class MpscRingBufferTest extends TestCase {
+    private static final int NUM_PRODUCERS = 8;
+    private static final int MESSAGES_PER_PRODUCER = 25000;
+
+    public void testSpillsIntoOverflowInOrder() {
+        MpscRingBuffer<Integer> queue = new MpscRingBuffer<Integer>(4);
+        for (int i = 0; i < 10; ++i) {
+            queue.offer(i);
+        }
+        // Interleave some taking with more adding so that the overflow list is
+        // added to while it is being drained.
+        assertEquals(Integer.valueOf(0), queue.poll());
+        assertEquals(Integer.valueOf(1), queue.poll());
+        queue.offer(10);
+        for (int i = 2; i <= 10; ++i) {
+            assertEquals(Integer.valueOf(i), queue.peek());
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertTrue(queue.isEmpty());
+        assertNull(queue.peek());
+        assertNull(queue.poll());
+        // Back to using the ring.
+        queue.offer(11);
+        assertEquals(Integer.valueOf(11), queue.poll());
+    }
+
+    public void testPerProducerOrderAcrossOverflow() throws InterruptedException {
+        // A tiny ring makes producers switch between it and the overflow list
+        // constantly, which is where ordering can go wrong. Having more
+        // producers than cores gets them preempted in the middle of offer().
+        final MpscRingBuffer<long[]> queue = new MpscRingBuffer<long[]>(4);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch doneLatch = new CountDownLatch(NUM_PRODUCERS);
+        for (int i = 0; i < NUM_PRODUCERS; ++i) {
+            final int producer = i;
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < MESSAGES_PER_PRODUCER; ++j) {
+                        queue.offer(new long[] { producer, j });
+                        if (j % 64 == 0) {
+                            Thread.yield();
+                        }
+                    }
+                    doneLatch.countDown();
+                }
+            }).start();
+        }
+        long[] lastSeen = new long[NUM_PRODUCERS];
+        for (int i = 0; i < NUM_PRODUCERS; ++i) {
+            lastSeen[i] = -1;
+        }
+        startLatch.countDown();
+        int numReceived = 0;
+        while (numReceived < NUM_PRODUCERS * MESSAGES_PER_PRODUCER) {
+            long[] peeked = queue.peek();
+            long[] element = queue.poll();
+            if (element == null) {
+                assertNull(peeked);
+                if (doneLatch.getCount() == 0 && queue.isEmpty()) {
+                    break;
+                }
+                continue;
+            }
+            if (peeked != null) {
+                assertSame("poll() must return what peek() did", peeked, element);
+            }
+            int producer = (int) element[0];
+            assertEquals("Out of order element from producer " + producer, lastSeen[producer] + 1, element[1]);
+            lastSeen[producer] = element[1];
+            numReceived += 1;
+        }
+        assertEquals(NUM_PRODUCERS * MESSAGES_PER_PRODUCER, numReceived);
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,101 @@
+package org.apache.cordova;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import org.apache.cordova.test.actions.CordovaWebViewTestActivity;
+
+import android.test.ActivityInstrumentationTestCase2;
+
+// In org.apache.cordova since the epoch of a PluginResult is package-private.
+public class NativeToJsMessageQueueEpochTest extends ActivityInstrumentationTestCase2<CordovaWebViewTestActivity> {
+    private static final String NEW_PAGE_URL = "file:///android_asset/www/new.html";
+
+    public NativeToJsMessageQueueEpochTest() {
+        super(CordovaWebViewTestActivity.class);
+    }
+
+    private CordovaWebViewTestActivity activity;
+    private NativeToJsMessageQueue queue;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        activity = this.getActivity();
+        // The constructor touches the WebView, so it must run on the UI thread.
+        getInstrumentation().runOnMainSync(new Runnable() {
+            public void run() {
+                queue = new NativeToJsMessageQueue(activity.cordovaWebView, activity);
+            }
+        });
+        // Polling mode: nothing drains the queue except for the test itself.
+        queue.setBridgeMode(0);
+    }
+
+    private static PluginResult resultForEpoch(String message, int epoch) {
+        PluginResult result = new PluginResult(PluginResult.Status.OK, message);
+        result.epoch = epoch;
+        return result;
+    }
+
+    public void testResultOfExecFromOldPageIsDropped() {
+        int oldEpoch = queue.getEpoch();
+        queue.reset(NEW_PAGE_URL);
+        queue.addPluginResult(resultForEpoch("old", oldEpoch), "Callback1");
+        assertNull(queue.popAndEncode(false));
+        queue.addPluginResult(resultForEpoch("new", queue.getEpoch()), "Callback1");
+        assertTrue(queue.popAndEncode(false).contains("snew"));
+    }
+
+    public void testStaleResultBehindNewerOneIsDropped() {
+        int oldEpoch = queue.getEpoch();
+        // The new page starts up before onPageStarted, so the old page's
+        // results are still accepted until reset() is called.
+        assertTrue(queue.beginEpoch(NEW_PAGE_URL));
+        int newEpoch = queue.getEpoch();
+        queue.addPluginResult(resultForEpoch("new1", newEpoch), "Callback1");
+        queue.addPluginResult(resultForEpoch("old", oldEpoch), "Callback1");
+        queue.addPluginResult(resultForEpoch("new2", newEpoch), "Callback2");
+        assertTrue(queue.reset(NEW_PAGE_URL));
+        String encoded = queue.popAndEncode(false);
+        assertTrue(encoded, encoded.contains("snew1"));
+        assertTrue(encoded, encoded.contains("snew2"));
+        assertFalse(encoded, encoded.contains("sold"));
+        assertNull(queue.popAndEncode(false));
+    }
+
+    public void testCoalescingDoesNotCrossEpochs() {
+        int oldEpoch = queue.getEpoch();
+        assertTrue(queue.beginEpoch(NEW_PAGE_URL));
+        PluginResult oldResult = resultForEpoch("old", oldEpoch);
+        oldResult.setKeepCallback(true);
+        oldResult.setCoalescing(true);
+        queue.addPluginResult(oldResult, "Progress");
+        // Same callback ID, but from the new page's exec(), so it must not replace the old result.
+        PluginResult newResult = resultForEpoch("new", queue.getEpoch());
+        newResult.setKeepCallback(true);
+        newResult.setCoalescing(true);
+        queue.addPluginResult(newResult, "Progress");
+        queue.reset(NEW_PAGE_URL);
+        String encoded = queue.popAndEncode(false);
+        assertTrue(encoded, encoded.contains("snew"));
+        assertFalse(encoded, encoded.contains("sold"));
+    }
+}
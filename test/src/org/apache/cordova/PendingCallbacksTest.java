@@ -0,0 +1,78 @@
+package org.apache.cordova;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import org.apache.cordova.test.actions.CordovaWebViewTestActivity;
+import org.json.JSONException;
+
+import android.test.ActivityInstrumentationTestCase2;
+
+// In org.apache.cordova since PluginManager.getPendingCallbackCount() is package-private.
+public class PendingCallbacksTest extends ActivityInstrumentationTestCase2<CordovaWebViewTestActivity> {
+    public PendingCallbacksTest() {
+        super(CordovaWebViewTestActivity.class);
+    }
+
+    private PluginManager pluginManager;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        pluginManager = getActivity().cordovaWebView.pluginManager;
+        pluginManager.addService(new PluginEntry("PendingTest", new CordovaPlugin() {
+            @Override
+            public boolean execute(String action, CordovaArgs args, CallbackContext callbackContext) throws JSONException {
+                if ("cancel".equals(action)) {
+                    callbackContext.cancel();
+                } else if ("timeout".equals(action)) {
+                    callbackContext.setTimeout(1);
+                }
+                return true;
+            }
+        }));
+    }
+
+    public void testInternalCallsAreNotTracked() {
+        int before = pluginManager.getPendingCallbackCount();
+        pluginManager.exec("PluginManager", "ackBridgeProbe", "PluginManager1", "[-1]");
+        pluginManager.exec("PluginManager", "grantCredits", "PluginManager2", "[\"unknown\",1]");
+        assertEquals(before, pluginManager.getPendingCallbackCount());
+    }
+
+    public void testCancelledCallIsNotTracked() {
+        int before = pluginManager.getPendingCallbackCount();
+        pluginManager.exec("PendingTest", "cancel", "PendingTest1", "[]");
+        assertEquals(before, pluginManager.getPendingCallbackCount());
+    }
+
+    public void testTimedOutCallIsForgotten() throws InterruptedException {
+        int before = pluginManager.getPendingCallbackCount();
+        pluginManager.exec("PendingTest", "pending", "PendingTest2", "[]");
+        assertEquals(before + 1, pluginManager.getPendingCallbackCount());
+        pluginManager.exec("PendingTest", "timeout", "PendingTest3", "[]");
+        // The timeout fires on the UI thread.
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pluginManager.getPendingCallbackCount() > before + 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(before + 1, pluginManager.getPendingCallbackCount());
+    }
+}
@@ -0,0 +1,118 @@
+package org.apache.cordova;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import android.net.Uri;
+
+// In org.apache.cordova since PluginHookLists is package-private.
+public class PluginHookListsTest extends TestCase {
+    public static class PlainPlugin extends CordovaPlugin {
+    }
+
+    public static class PausingPlugin extends CordovaPlugin {
+        @Override
+        public void onPause(boolean multitasking) {
+        }
+
+        @Override
+        public Uri remapUri(Uri uri) {
+            return null;
+        }
+    }
+
+    // Inherits the overrides of its superclass.
+    public static class ResettingPlugin extends PausingPlugin {
+        @Override
+        public void onReset() {
+        }
+    }
+
+    // An overload isn't an override of the hook.
+    public static class OverloadingPlugin extends CordovaPlugin {
+        public void onPause() {
+        }
+    }
+
+    private PluginHookLists hookLists = new PluginHookLists();
+
+    private void assertHooks(CordovaPlugin[] expected, int hook) {
+        assertEquals(Arrays.asList(expected), Arrays.asList(hookLists.get(hook)));
+    }
+
+    public void testPluginsWithoutOverridesAreLeftOut() {
+        hookLists.add(new PlainPlugin());
+        hookLists.add(new OverloadingPlugin());
+        for (int hook = PluginHookLists.PAUSE; hook <= PluginHookLists.RESET; ++hook) {
+            assertEquals(0, hookLists.get(hook).length);
+        }
+    }
+
+    public void testPluginsAreListedForOverriddenHooksOnly() {
+        CordovaPlugin pausing = new PausingPlugin();
+        CordovaPlugin resetting = new ResettingPlugin();
+        hookLists.add(pausing);
+        hookLists.add(new PlainPlugin());
+        hookLists.add(resetting);
+        assertHooks(new CordovaPlugin[] { pausing, resetting }, PluginHookLists.PAUSE);
+        assertHooks(new CordovaPlugin[] { pausing, resetting }, PluginHookLists.REMAP_URI);
+        assertHooks(new CordovaPlugin[] { resetting }, PluginHookLists.RESET);
+        assertHooks(new CordovaPlugin[0], PluginHookLists.RESUME);
+        assertHooks(new CordovaPlugin[0], PluginHookLists.DESTROY);
+        assertHooks(new CordovaPlugin[0], PluginHookLists.MESSAGE);
+        assertHooks(new CordovaPlugin[0], PluginHookLists.NEW_INTENT);
+    }
+
+    public void testRemove() {
+        CordovaPlugin first = new PausingPlugin();
+        CordovaPlugin second = new ResettingPlugin();
+        CordovaPlugin third = new PausingPlugin();
+        hookLists.add(first);
+        hookLists.add(second);
+        hookLists.add(third);
+        hookLists.remove(second);
+        assertHooks(new CordovaPlugin[] { first, third }, PluginHookLists.PAUSE);
+        assertHooks(new CordovaPlugin[0], PluginHookLists.RESET);
+        // Removing a plugin that isn't listed does nothing.
+        hookLists.remove(new PausingPlugin());
+        assertHooks(new CordovaPlugin[] { first, third }, PluginHookLists.PAUSE);
+    }
+
+    public void testListsAreReplacedNotModified() {
+        CordovaPlugin first = new PausingPlugin();
+        hookLists.add(first);
+        CordovaPlugin[] before = hookLists.get(PluginHookLists.PAUSE);
+        hookLists.add(new PausingPlugin());
+        hookLists.remove(first);
+        assertEquals(Arrays.asList(first), Arrays.asList(before));
+    }
+
+    public void testClear() {
+        hookLists.add(new ResettingPlugin());
+        hookLists.clear();
+        assertEquals(0, hookLists.get(PluginHookLists.PAUSE).length);
+        assertEquals(0, hookLists.get(PluginHookLists.RESET).length);
+    }
+}
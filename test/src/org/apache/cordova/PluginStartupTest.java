@@ -0,0 +1,165 @@
+package org.apache.cordova;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.cordova.test.actions.CordovaWebViewTestActivity;
+
+import android.test.ActivityInstrumentationTestCase2;
+
+// In org.apache.cordova since PluginStartup is package-private.
+public class PluginStartupTest extends ActivityInstrumentationTestCase2<CordovaWebViewTestActivity> {
+    public PluginStartupTest() {
+        super(CordovaWebViewTestActivity.class);
+    }
+
+    // The plugins in the order that they were initialized.
+    private static final List<String> created = new ArrayList<String>();
+    private static CountDownLatch slowPluginGate;
+
+    public static class RecordingPlugin extends CordovaPlugin {
+        @Override
+        public void initialize(CordovaInterface cordova, CordovaWebView webView) {
+            String name = getClass().getSimpleName();
+            synchronized (created) {
+                created.add(name);
+                created.notifyAll();
+            }
+        }
+    }
+
+    public static class A extends RecordingPlugin {}
+    public static class B extends RecordingPlugin {}
+    public static class C extends RecordingPlugin {}
+    public static class D extends RecordingPlugin {}
+
+    public static class Slow extends RecordingPlugin {
+        @Override
+        public void initialize(CordovaInterface cordova, CordovaWebView webView) {
+            try {
+                slowPluginGate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.initialize(cordova, webView);
+        }
+    }
+
+    private static PluginEntry publishingEntry;
+    private static CordovaPlugin seenDuringInitialize;
+
+    public static class Publishing extends CordovaPlugin {
+        @Override
+        public void initialize(CordovaInterface cordova, CordovaWebView webView) {
+            super.initialize(cordova, webView);
+            seenDuringInitialize = publishingEntry.plugin;
+        }
+    }
+
+    private PluginManager pluginManager;
+    private CordovaInterface ctx;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        pluginManager = getActivity().cordovaWebView.pluginManager;
+        ctx = getActivity();
+        synchronized (created) {
+            created.clear();
+        }
+        slowPluginGate = new CountDownLatch(1);
+    }
+
+    private static PluginEntry entry(String name, String... onloadAfter) {
+        PluginEntry ret = new PluginEntry(name, PluginStartupTest.class.getName() + "$" + name, true);
+        ret.onloadAfter = onloadAfter;
+        return ret;
+    }
+
+    private static List<String> waitForCreated(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        synchronized (created) {
+            while (created.size() < count && System.currentTimeMillis() < deadline) {
+                created.wait(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+            return new ArrayList<String>(created);
+        }
+    }
+
+    private void run(boolean parallel, PluginEntry... entries) {
+        new PluginStartup(pluginManager, ctx, Arrays.asList(entries), new StartupTimeline(), parallel).run();
+    }
+
+    public void testCreatesInConfigOrder() throws InterruptedException {
+        run(false, entry("C"), entry("A"), entry("D"), entry("B"));
+        assertEquals(Arrays.asList("C", "A", "D", "B"), waitForCreated(4));
+    }
+
+    public void testOnloadAfterOverridesConfigOrder() throws InterruptedException {
+        // B waits for C, and is then created ahead of D since it comes first.
+        run(false, entry("A"), entry("B", "C"), entry("C"), entry("D"));
+        assertEquals(Arrays.asList("A", "C", "B", "D"), waitForCreated(4));
+    }
+
+    public void testSkipsNonOnloadDependencies() throws InterruptedException {
+        run(false, entry("A", "NotThere"), entry("B"));
+        assertEquals(Arrays.asList("A", "B"), waitForCreated(2));
+    }
+
+    public void testBreaksCycles() throws InterruptedException {
+        // A and B wait on each other, and C waits on the cycle. All of them are
+        // still created, in config order.
+        run(false, entry("C", "A"), entry("A", "B"), entry("B", "A"), entry("D"));
+        assertEquals(Arrays.asList("C", "A", "B", "D"), waitForCreated(4));
+    }
+
+    public void testDoesNotWaitForBackgroundPlugins() throws InterruptedException {
+        PluginEntry slow = entry("Slow");
+        slow.backgroundInit = true;
+        run(true, slow, entry("A", "Slow"), entry("B"));
+        // Returns with only B created, rather than blocking on Slow.
+        assertEquals(Arrays.asList("B"), waitForCreated(1));
+        slowPluginGate.countDown();
+        // A follows once Slow is done.
+        assertEquals(Arrays.asList("B", "Slow", "A"), waitForCreated(3));
+    }
+
+    public void testCreatesBackgroundPluginsInlineWhenNotParallel() throws InterruptedException {
+        slowPluginGate.countDown();
+        PluginEntry slow = entry("Slow");
+        slow.backgroundInit = true;
+        run(false, entry("A", "Slow"), slow);
+        assertEquals(Arrays.asList("Slow", "A"), waitForCreated(2));
+    }
+
+    public void testPluginIsPublishedOnceInitialized() {
+        publishingEntry = entry("Publishing");
+        CordovaPlugin plugin = pluginManager.createPlugin(publishingEntry);
+        assertTrue(plugin instanceof Publishing);
+        // Threads that read PluginEntry.plugin without the lock must not see it half-initialized.
+        assertNull(seenDuringInitialize);
+        assertSame(plugin, publishingEntry.plugin);
+    }
+}
@@ -0,0 +1,102 @@
+package org.apache.cordova;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+// In org.apache.cordova since SerialExecutor is package-private.
+public class SerialExecutorTest extends TestCase {
+    private static final int NUM_TASKS = 1000;
+
+    private ExecutorService pool;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        pool = Executors.newFixedThreadPool(4);
+    }
+
+    protected void tearDown() throws Exception {
+        pool.shutdownNow();
+        super.tearDown();
+    }
+
+    public void testRunsTasksOneAtATimeInOrder() throws InterruptedException {
+        SerialExecutor executor = new SerialExecutor(pool);
+        final ArrayList<Integer> order = new ArrayList<Integer>();
+        final AtomicInteger numRunning = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(NUM_TASKS);
+        for (int i = 0; i < NUM_TASKS; ++i) {
+            final int taskNum = i;
+            executor.execute(new Runnable() {
+                public void run() {
+                    int running = numRunning.incrementAndGet();
+                    if (running > maxRunning.get()) {
+                        maxRunning.set(running);
+                    }
+                    // Only one task runs at a time, but not always on the same thread.
+                    synchronized (order) {
+                        order.add(taskNum);
+                    }
+                    numRunning.decrementAndGet();
+                    done.countDown();
+                }
+            });
+            if (i % 100 == 0) {
+                // Let the queue drain now and then, so that the executor goes
+                // idle and has to start up again on another pool thread.
+                Thread.sleep(5);
+            }
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+        synchronized (order) {
+            assertEquals(NUM_TASKS, order.size());
+            for (int i = 0; i < NUM_TASKS; ++i) {
+                assertEquals(i, order.get(i).intValue());
+            }
+        }
+    }
+
+    public void testFailingTaskDoesNotStallLaterOnes() throws InterruptedException {
+        SerialExecutor executor = new SerialExecutor(pool);
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            public void run() {
+                throw new IllegalStateException("Expected by the test");
+            }
+        });
+        executor.execute(new Runnable() {
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+}
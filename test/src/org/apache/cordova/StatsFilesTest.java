@@ -0,0 +1,47 @@
+package org.apache.cordova;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+// In org.apache.cordova since StatsFiles is package-private.
+public class StatsFilesTest extends TestCase {
+    private static final File DIR = new File("/data/data/org.apache.cordova.test/files");
+
+    public void testResolvesNamesInDirectory() {
+        assertEquals(new File(DIR, "stats.json"), StatsFiles.resolve(DIR, "stats.json", "default.json"));
+        assertEquals(new File(DIR, "default.json"), StatsFiles.resolve(DIR, "", "default.json"));
+        assertEquals(new File(DIR, "default.json"), StatsFiles.resolve(DIR, null, "default.json"));
+    }
+
+    public void testRejectsPaths() {
+        assertNull(StatsFiles.resolve(DIR, "/sdcard/stats.json", "default.json"));
+        assertNull(StatsFiles.resolve(DIR, "../shared_prefs/prefs.xml", "default.json"));
+        assertNull(StatsFiles.resolve(DIR, "sub/stats.json", "default.json"));
+        assertNull(StatsFiles.resolve(DIR, "..\\stats.json", "default.json"));
+        assertNull(StatsFiles.resolve(DIR, "..", "default.json"));
+        assertNull(StatsFiles.resolve(DIR, ".", "default.json"));
+        assertNull(StatsFiles.resolve(DIR, "stats\u0000.json", "default.json"));
+    }
+}
@@ -0,0 +1,81 @@
+package org.apache.cordova;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+// In org.apache.cordova since UploadStore is package-private.
+public class UploadStoreTest extends TestCase {
+    private static byte[] readAll(InputStream stream) throws IOException {
+        byte[] buffer = new byte[64];
+        int length = 0;
+        int numRead;
+        while ((numRead = stream.read(buffer, length, buffer.length - length)) > 0) {
+            length += numRead;
+        }
+        byte[] ret = new byte[length];
+        System.arraycopy(buffer, 0, ret, 0, length);
+        return ret;
+    }
+
+    public void testChunksAreJoined() throws IOException {
+        UploadStore store = new UploadStore();
+        String handle = store.append(null, "ab");
+        assertNotNull(handle);
+        assertEquals(handle, store.append(handle, "c\u00ff"));
+        // Zero bytes arrive as 0x100, and only the low 8 bits are kept.
+        assertEquals(handle, store.append(handle, "\u0100"));
+        assertTrue(Arrays.equals(new byte[] { 'a', 'b', 'c', (byte) 0xff, 0 }, readAll(store.open(handle))));
+    }
+
+    public void testUploadOpensOnce() {
+        UploadStore store = new UploadStore();
+        String handle = store.append("", "data");
+        assertNotNull(store.open(handle));
+        assertNull(store.open(handle));
+        assertNull(store.append(handle, "more"));
+        assertNull(store.open("unknown"));
+        assertNull(store.open(null));
+    }
+
+    public void testHandlesAreDistinct() {
+        UploadStore store = new UploadStore();
+        assertFalse(store.append(null, "a").equals(store.append(null, "b")));
+    }
+
+    public void testClearKeepsUploadsAfterMark() {
+        UploadStore store = new UploadStore();
+        String before = store.append(null, "old");
+        int mark = store.mark();
+        String after = store.append(null, "new");
+        store.clear(mark);
+        assertNull(store.open(before));
+        assertNotNull(store.open(after));
+        String another = store.append(null, "x");
+        store.clear();
+        assertNull(store.open(another));
+    }
+}
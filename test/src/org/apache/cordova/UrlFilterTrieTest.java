@@ -0,0 +1,89 @@
+package org.apache.cordova;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import junit.framework.TestCase;
+
+// In org.apache.cordova since UrlFilterTrie is package-private.
+public class UrlFilterTrieTest extends TestCase {
+    private UrlFilterTrie trie = new UrlFilterTrie();
+
+    public void testEmptyTrieMatchesNothing() {
+        assertNull(trie.match("http://example.com/"));
+        assertNull(trie.match(""));
+    }
+
+    public void testLongestPrefixWins() {
+        trie.add("http://", "Http");
+        trie.add("http://example.com/", "Example");
+        trie.add("http://example.com/api/", "Api");
+        assertEquals("Api", trie.match("http://example.com/api/v1"));
+        assertEquals("Api", trie.match("http://example.com/api/"));
+        assertEquals("Example", trie.match("http://example.com/ap"));
+        assertEquals("Example", trie.match("http://example.com/index.html"));
+        assertEquals("Http", trie.match("http://example.org/"));
+        assertEquals("Http", trie.match("http://"));
+    }
+
+    public void testShorterPrefixMatchesPastDeadEnd() {
+        trie.add("file:///android_asset/", "Assets");
+        trie.add("file:///android_asset/www/plugins/", "Plugins");
+        // Diverges from the longer prefix after the shorter one matched.
+        assertEquals("Assets", trie.match("file:///android_asset/www/index.html"));
+    }
+
+    public void testNoPrefixMatches() {
+        trie.add("http://example.com/", "Example");
+        assertNull(trie.match("http://example.co"));
+        assertNull(trie.match("https://example.com/"));
+        assertNull(trie.match(""));
+    }
+
+    public void testIsCaseSensitive() {
+        trie.add("http://Example.com/", "Example");
+        assertNull(trie.match("http://example.com/"));
+    }
+
+    public void testSiblingsAtTheSameDepth() {
+        // Added out of order, so that children are inserted ahead of existing ones.
+        trie.add("c://", "C");
+        trie.add("a://", "A");
+        trie.add("b://", "B");
+        assertEquals("A", trie.match("a://x"));
+        assertEquals("B", trie.match("b://x"));
+        assertEquals("C", trie.match("c://x"));
+        assertNull(trie.match("d://x"));
+    }
+
+    public void testLaterServiceReplacesEarlierForSamePrefix() {
+        trie.add("http://example.com/", "First");
+        trie.add("http://example.com/", "Second");
+        assertEquals("Second", trie.match("http://example.com/"));
+    }
+
+    public void testEmptyPrefixMatchesEverything() {
+        trie.add("", "Everything");
+        trie.add("http://", "Http");
+        assertEquals("Everything", trie.match("ftp://example.com/"));
+        assertEquals("Http", trie.match("http://example.com/"));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.CordovaArgs;
+import org.apache.cordova.CordovaPlugin;
+import org.apache.cordova.LOG;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Native half of the bridge benchmark in www/bridgebench.
+ */
+public class BridgeBenchmarkPlugin extends CordovaPlugin {
+
+    static String TAG = "BridgeBenchmark";
+
+    /**
+     * Results passed to the "report" action, for BridgeBenchmarkTest to wait on.
+     */
+    static final BlockingQueue<JSONArray> reports = new LinkedBlockingQueue<JSONArray>();
+
+    public boolean execute(String action, CordovaArgs args, final CallbackContext callbackContext) throws JSONException {
+        if (action.equals("echo")) {
+            // Replies before exec() returns, so that exec chaining can pick it up.
+            callbackContext.success(args.getString(0));
+            return true;
+        }
+        if (action.equals("burst")) {
+            final int count = args.getInt(0);
+            final String payload = args.getString(1);
+            cordova.getThreadPool().execute(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < count; ++i) {
+                        PluginResult result = new PluginResult(PluginResult.Status.OK, payload);
+                        result.setKeepCallback(i + 1 < count);
+                        callbackContext.sendPluginResult(result);
+                    }
+                }
+            });
+            return true;
+        }
+        if (action.equals("report")) {
+            JSONArray rows = args.getJSONArray(0);
+            for (int i = 0; i < rows.length(); ++i) {
+                JSONObject row = rows.getJSONObject(i);
+                LOG.i(TAG, "nativeToJsMode=%d eval=%b execChaining=%b: %s msgs/sec, round trip p50=%sms p99=%sms",
+                        row.getInt("nativeToJsMode"), row.getBoolean("forceEncodeUsingEval"), !row.getBoolean("disableExecChaining"),
+                        row.optString("messagesPerSec", "-"), row.optString("p50", "-"), row.optString("p99", "-"));
+            }
+            reports.offer(rows);
+            callbackContext.success();
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,52 @@
+package org.apache.cordova.test;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.test.actions.bridgebench;
+import org.json.JSONArray;
+
+import android.test.ActivityInstrumentationTestCase2;
+
+/**
+ * Runs the bridge benchmark page. The plugin logs the results under the
+ * BridgeBenchmark tag.
+ */
+public class BridgeBenchmarkTest extends ActivityInstrumentationTestCase2<bridgebench> {
+
+    // 4 native->JS modes x 2 encodings x exec chaining on/off.
+    private static final int NUM_CONFIGURATIONS = 16;
+
+    public BridgeBenchmarkTest()
+    {
+        super(bridgebench.class);
+    }
+
+    public void testBenchmark() throws InterruptedException {
+        BridgeBenchmarkPlugin.reports.clear();
+        getActivity();
+        JSONArray rows = BridgeBenchmarkPlugin.reports.poll(5, TimeUnit.MINUTES);
+        assertNotNull("Benchmark did not finish", rows);
+        assertEquals(NUM_CONFIGURATIONS, rows.length());
+    }
+}
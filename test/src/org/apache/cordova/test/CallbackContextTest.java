@@ -0,0 +1,141 @@
+package org.apache.cordova.test;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.apache.cordova.test.actions.CordovaWebViewTestActivity;
+
+import android.test.ActivityInstrumentationTestCase2;
+
+public class CallbackContextTest extends ActivityInstrumentationTestCase2<CordovaWebViewTestActivity> {
+
+    public CallbackContextTest()
+    {
+        super(CordovaWebViewTestActivity.class);
+    }
+
+    private CordovaWebViewTestActivity activity;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        activity = this.getActivity();
+    }
+
+    private static PluginResult keepCallbackResult() {
+        PluginResult result = new PluginResult(PluginResult.Status.OK, "data");
+        result.setKeepCallback(true);
+        return result;
+    }
+
+    public void testFlowControlCredits() throws InterruptedException {
+        CallbackContext callbackContext = new CallbackContext("FlowControl0", activity.cordovaWebView);
+        callbackContext.enableFlowControl(2, CallbackContext.OverflowPolicy.FAIL);
+        final CountDownLatch writable = new CountDownLatch(1);
+        callbackContext.setWritableListener(new CallbackContext.WritableListener() {
+            public void onWritable(CallbackContext callbackContext) {
+                writable.countDown();
+            }
+        });
+
+        assertTrue(callbackContext.trySendPluginResult(keepCallbackResult()));
+        assertTrue(callbackContext.trySendPluginResult(keepCallbackResult()));
+        assertFalse(callbackContext.trySendPluginResult(keepCallbackResult()));
+        assertTrue(callbackContext.getQueueDepth() <= 2);
+
+        // This is what cordova.require('cordova/exec').grantCredits() does.
+        activity.cordovaWebView.pluginManager.exec("PluginManager", "grantCredits", "PluginManager0", "[\"FlowControl0\",1]");
+        assertTrue(writable.await(5, TimeUnit.SECONDS));
+        assertTrue(callbackContext.trySendPluginResult(keepCallbackResult()));
+        assertFalse(callbackContext.trySendPluginResult(keepCallbackResult()));
+
+        // The final result is never held back.
+        assertTrue(callbackContext.trySendPluginResult(new PluginResult(PluginResult.Status.OK)));
+    }
+
+    public void testStreamChunksReleaseQueueDepth() throws InterruptedException {
+        CallbackContext callbackContext = new CallbackContext("FlowControlStream0", activity.cordovaWebView);
+        callbackContext.enableFlowControl(2, CallbackContext.OverflowPolicy.FAIL);
+        byte[] data = new byte[200 * 1024];
+        assertTrue(callbackContext.trySendPluginResult(new PluginResult(PluginResult.Status.OK, new ByteArrayInputStream(data))));
+        // The stream is sent as several chunks, and the bridge hands each to JS.
+        long deadline = System.currentTimeMillis() + 5000;
+        while (callbackContext.getQueueDepth() != 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // Between chunks the depth drops to 0 briefly, so make sure it stays there.
+        Thread.sleep(500);
+        assertEquals(0, callbackContext.getQueueDepth());
+    }
+
+    public void testStreamChunksTakeCredits() throws InterruptedException {
+        CallbackContext callbackContext = new CallbackContext("FlowControlStream1", activity.cordovaWebView);
+        callbackContext.enableFlowControl(2, CallbackContext.OverflowPolicy.FAIL);
+        // Seven 32k chunks. The first takes the credit of the stream result itself.
+        PluginResult result = new PluginResult(PluginResult.Status.OK, new ByteArrayInputStream(new byte[7 * 32 * 1024 - 1]));
+        result.setKeepCallback(true);
+        assertTrue(callbackContext.trySendPluginResult(result));
+        Thread.sleep(500);
+        // The second chunk took the last credit, and the third waits for more.
+        assertEquals(0, callbackContext.getCredits());
+
+        activity.cordovaWebView.pluginManager.exec("PluginManager", "grantCredits", "PluginManager1", "[\"FlowControlStream1\",10]");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (callbackContext.getCredits() != 5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(5, callbackContext.getCredits());
+    }
+
+    public void testCancelledContextDropsResults() throws InterruptedException {
+        CallbackContext callbackContext = new CallbackContext("Cancel0", activity.cordovaWebView);
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        callbackContext.setCancellationListener(new CallbackContext.CancellationListener() {
+            public void onCancelled(CallbackContext callbackContext) {
+                cancelled.countDown();
+            }
+        });
+        assertTrue(callbackContext.trySendPluginResult(keepCallbackResult()));
+        callbackContext.cancel();
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        assertTrue(callbackContext.isCancelled());
+        assertFalse(callbackContext.trySendPluginResult(new PluginResult(PluginResult.Status.OK)));
+    }
+
+    public void testTimeoutCancels() throws InterruptedException {
+        CallbackContext callbackContext = new CallbackContext("Timeout0", activity.cordovaWebView);
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        callbackContext.setCancellationListener(new CallbackContext.CancellationListener() {
+            public void onCancelled(CallbackContext callbackContext) {
+                cancelled.countDown();
+            }
+        });
+        callbackContext.setTimeout(50);
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        assertTrue(callbackContext.isFinished());
+        assertFalse(callbackContext.trySendPluginResult(new PluginResult(PluginResult.Status.OK)));
+    }
+}
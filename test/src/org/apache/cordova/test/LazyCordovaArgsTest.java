@@ -0,0 +1,97 @@
+package org.apache.cordova.test;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.cordova.LazyCordovaArgs;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import android.util.Base64;
+
+public class LazyCordovaArgsTest extends TestCase {
+    private static final String RAW_ARGS = "[\"abc\", 12, {\"a\":[1,\"]\"]}, \"x\\\"y\", null, true, \"7\"]";
+
+    public void testMatchesJSONArray() throws JSONException {
+        LazyCordovaArgs args = new LazyCordovaArgs(RAW_ARGS);
+        JSONArray expected = new JSONArray(RAW_ARGS);
+        assertEquals(expected.length(), args.length());
+        assertEquals(expected.getString(0), args.getString(0));
+        assertEquals(expected.getInt(1), args.getInt(1));
+        assertEquals(expected.getJSONObject(2).toString(), args.getJSONObject(2).toString());
+        assertEquals(expected.getString(3), args.getString(3));
+        assertTrue(args.isNull(4));
+        assertTrue(args.getBoolean(5));
+        // Same conversions as JSONArray.
+        assertEquals(7, args.getInt(6));
+        assertEquals("12", args.getString(1));
+        assertEquals(0, args.optInt(100));
+        assertTrue(args.isNull(100));
+        try {
+            args.getString(100);
+            fail("Expected an exception");
+        } catch (JSONException e) {
+        }
+    }
+
+    public void testArrayBuffer() throws JSONException {
+        for (int n = 0; n < 10; ++n) {
+            byte[] data = new byte[n];
+            for (int i = 0; i < n; ++i) {
+                data[i] = (byte) (i * 37);
+            }
+            String raw = "[\"" + Base64.encodeToString(data, Base64.NO_WRAP) + "\"]";
+            assertTrue(Arrays.equals(data, new LazyCordovaArgs(raw).getArrayBuffer(0)));
+        }
+    }
+
+    public void testArrayBufferSkipsInvalidCharacters() throws JSONException {
+        byte[] expected = { 1, 2, 3 };
+        // Base64.DEFAULT skips anything outside of the alphabet, including URL-safe characters.
+        String[] encodings = { "AQID", "A Q-I_D", "*AQ ID*", "AQID=" };
+        for (String encoded : encodings) {
+            LazyCordovaArgs args = new LazyCordovaArgs("[\"" + encoded + "\"]");
+            assertTrue(encoded, Arrays.equals(expected, args.getArrayBuffer(0)));
+        }
+        assertTrue(Arrays.equals(new byte[] { 1 }, new LazyCordovaArgs("[\"AQ==\"]").getArrayBuffer(0)));
+        assertTrue(Arrays.equals(new byte[] { 1 }, new LazyCordovaArgs("[\"AQ\"]").getArrayBuffer(0)));
+        try {
+            new LazyCordovaArgs("[\"AQIDB\"]").getArrayBuffer(0);
+            fail("Expected an exception for a dangling character");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testMalformedArgs() {
+        String[] malformed = { "", "1", "[1,]", "[1", "[\"a]", "[1] x" };
+        for (String raw : malformed) {
+            try {
+                new LazyCordovaArgs(raw);
+                fail("Expected an exception for: " + raw);
+            } catch (JSONException e) {
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package org.apache.cordova.test;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.cordova.NativeToJsMessageQueue;
+import org.apache.cordova.PluginResult;
+import org.apache.cordova.test.actions.CordovaWebViewTestActivity;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Base64;
+import android.util.Log;
+
+public class NativeToJsMessageQueueTest extends ActivityInstrumentationTestCase2<CordovaWebViewTestActivity> {
+    private static final String TAG = "NativeToJsMessageQueueTest";
+
+    private static final int NUM_PRODUCERS = 4;
+    private static final int MESSAGES_PER_PRODUCER = 5000;
+    // How much slower NUM_PRODUCERS producers may be than one producer sending
+    // the same number of messages.
+    private static final int MAX_CONTENTION_SLOWDOWN = 3;
+
+    public NativeToJsMessageQueueTest()
+    {
+        super(CordovaWebViewTestActivity.class);
+    }
+
+    private CordovaWebViewTestActivity activity;
+    private NativeToJsMessageQueue queue;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        activity = this.getActivity();
+        // The constructor touches the WebView, so it must run on the UI thread.
+        getInstrumentation().runOnMainSync(new Runnable() {
+            public void run() {
+                queue = new NativeToJsMessageQueue(activity.cordovaWebView, activity);
+            }
+        });
+        // Polling mode: nothing drains the queue except for the test itself.
+        queue.setBridgeMode(0);
+    }
+
+    public void testEmptyQueue() {
+        assertNull(queue.popAndEncode(false));
+    }
+
+    public void testStatsArePerBridgeMode() throws JSONException {
+        for (int i = 0; i < 3; ++i) {
+            queue.addPluginResult(new PluginResult(PluginResult.Status.OK, i), "Stats");
+        }
+        assertNotNull(queue.popAndEncode(false));
+        JSONObject stats = queue.getStats().toJSON();
+        JSONObject polling = stats.getJSONObject("polling");
+        assertEquals(3, polling.getJSONObject("queueLatencyMicros").getInt("count"));
+        assertEquals(1, polling.getJSONObject("messagesPerFlush").getInt("count"));
+        assertEquals(3, polling.getJSONObject("messagesPerFlush").getInt("max"));
+        assertFalse(stats.has("loadUrl"));
+    }
+
+    private static PluginResult coalescingResult(int value, boolean keepCallback) {
+        PluginResult result = new PluginResult(PluginResult.Status.OK, value);
+        result.setKeepCallback(keepCallback);
+        result.setCoalescing(true);
+        return result;
+    }
+
+    public void testCoalescingResultsReplaceQueuedOne() {
+        queue.addPluginResult(coalescingResult(1, true), "Progress");
+        queue.addPluginResult(new PluginResult(PluginResult.Status.OK, "other"), "Other");
+        queue.addPluginResult(coalescingResult(2, true), "Progress");
+        queue.addPluginResult(coalescingResult(3, true), "Progress");
+        // Only the newest value is sent, in the place of the first one.
+        assertEquals("15 S11 Progress n316 S01 Other sother", queue.popAndEncode(false));
+    }
+
+    public void testCoalescingStopsAtNonCoalescingResult() {
+        queue.addPluginResult(coalescingResult(1, true), "Progress");
+        // A final result must not be overtaken by later ones, nor be replaced.
+        queue.addPluginResult(coalescingResult(2, false), "Progress");
+        queue.addPluginResult(coalescingResult(3, true), "Progress");
+        assertEquals("15 S11 Progress n115 S01 Progress n215 S11 Progress n3", queue.popAndEncode(false));
+    }
+
+    public void testCoalescingStopsOncePopped() {
+        queue.addPluginResult(coalescingResult(1, true), "Progress");
+        assertEquals("15 S11 Progress n1", queue.popAndEncode(false));
+        queue.addPluginResult(coalescingResult(2, true), "Progress");
+        assertEquals("15 S11 Progress n2", queue.popAndEncode(false));
+    }
+
+    public void testCoalescedResultIsMeasuredAfterReplacement() {
+        queue.addPluginResult(coalescingResult(1, true), "Progress");
+        char[] chars = new char[200000];
+        Arrays.fill(chars, 'x');
+        PluginResult large = new PluginResult(PluginResult.Status.OK, new String(chars));
+        large.setKeepCallback(true);
+        large.setCoalescing(true);
+        queue.addPluginResult(large, "Progress");
+        // The queued message was small, but what it now holds is over budget
+        // and so must be split.
+        String payload = queue.popAndEncode(false);
+        assertTrue("Payload of " + payload.length() + " chars was not split", payload.length() < chars.length);
+        assertEquals('C', payload.charAt(payload.indexOf(' ') + 1));
+    }
+
+    public void testLargeMessageIsSentInChunks() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000; ++i) {
+            // Include surrogate pairs, which must never be split across chunks.
+            sb.append(i % 7 == 0 ? "\ud83d\ude00" : "abc");
+        }
+        String str = sb.toString();
+        queue.addPluginResult(new PluginResult(PluginResult.Status.OK, str), "Chunked");
+        queue.addPluginResult(new PluginResult(PluginResult.Status.OK, "after"), "After");
+
+        StringBuilder chunks = new StringBuilder();
+        String message = null;
+        int numChunks = 0;
+        String payload;
+        while (message == null && (payload = queue.popAndEncode(false)) != null) {
+            int spaceIdx = payload.indexOf(' ');
+            int msgLen = Integer.parseInt(payload.substring(0, spaceIdx));
+            String chunk = payload.substring(spaceIdx + 1, spaceIdx + 1 + msgLen);
+            assertFalse(Character.isHighSurrogate(chunk.charAt(chunk.length() - 1)));
+            numChunks += 1;
+            if (chunk.charAt(0) == 'C') {
+                chunks.append(chunk, 1, chunk.length());
+            } else {
+                assertEquals('c', chunk.charAt(0));
+                chunks.append(chunk, 1, chunk.length());
+                message = chunks.toString();
+            }
+        }
+        assertTrue("Expected more than one chunk", numChunks > 1);
+        assertEquals("S01 Chunked s" + str, message);
+        assertEquals("16 S01 After safter", queue.popAndEncode(false));
+    }
+
+    public void testStreamIsSentInChunks() throws InterruptedException {
+        byte[] data = new byte[200 * 1024];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) i;
+        }
+        queue.addPluginResult(new PluginResult(PluginResult.Status.OK, new ByteArrayInputStream(data)), "Stream");
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        int numChunks = 0;
+        long deadline = System.currentTimeMillis() + 5000;
+        boolean done = false;
+        while (!done && System.currentTimeMillis() < deadline) {
+            String payload = queue.popAndEncode(false);
+            if (payload == null) {
+                // The next chunk is read on a background thread.
+                Thread.sleep(5);
+                continue;
+            }
+            int spaceIdx = payload.indexOf(' ');
+            int msgLen = Integer.parseInt(payload.substring(0, spaceIdx));
+            String message = payload.substring(spaceIdx + 1, spaceIdx + 1 + msgLen);
+            // Format is: S<keepCallback>1 Stream A<base64>
+            assertTrue(message.startsWith("S11 Stream A") || message.startsWith("S01 Stream A"));
+            byte[] chunk = Base64.decode(message.substring("S11 Stream A".length()), Base64.DEFAULT);
+            received.write(chunk, 0, chunk.length);
+            numChunks += 1;
+            done = message.charAt(1) == '0';
+        }
+        assertTrue("Stream did not finish", done);
+        assertTrue("Expected more than one chunk", numChunks > 1);
+        assertTrue(Arrays.equals(data, received.toByteArray()));
+    }
+
+    public void testOrderingUnderContention() throws InterruptedException {
+        runProducers(NUM_PRODUCERS, MESSAGES_PER_PRODUCER);
+        assertNull(queue.popAndEncode(false));
+    }
+
+    public void testContentionBenchmark() throws InterruptedException {
+        int numMessages = NUM_PRODUCERS * MESSAGES_PER_PRODUCER;
+        // Warm up.
+        runProducers(NUM_PRODUCERS, MESSAGES_PER_PRODUCER);
+        long startTime = System.nanoTime();
+        runProducers(1, numMessages);
+        long uncontendedNanos = System.nanoTime() - startTime;
+        startTime = System.nanoTime();
+        runProducers(NUM_PRODUCERS, MESSAGES_PER_PRODUCER);
+        long contendedNanos = System.nanoTime() - startTime;
+        Log.i(TAG, "Enqueued and drained " + numMessages + " messages in " + (uncontendedNanos / 1000000) + "ms with 1 producer, "
+                + (contendedNanos / 1000000) + "ms with " + NUM_PRODUCERS + " (" + (numMessages * 1000000000L / contendedNanos) + " messages/sec)");
+        // Producers don't share a lock, so adding more of them must not make
+        // the same amount of work much slower.
+        assertTrue("Contended run took " + (contendedNanos / 1000000) + "ms vs " + (uncontendedNanos / 1000000) + "ms uncontended",
+                contendedNanos < MAX_CONTENTION_SLOWDOWN * uncontendedNanos);
+    }
+
+    // Has every producer send increasing numbers while the test thread drains the
+    // queue, checking that each producer's messages all come out, in order.
+    private void runProducers(int numProducers, final int messagesPerProducer) throws InterruptedException {
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch doneLatch = new CountDownLatch(numProducers);
+        for (int i = 0; i < numProducers; ++i) {
+            final String callbackId = "Producer" + i;
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < messagesPerProducer; ++j) {
+                        PluginResult result = new PluginResult(PluginResult.Status.OK, j);
+                        result.setKeepCallback(true);
+                        queue.addPluginResult(result, callbackId);
+                    }
+                    doneLatch.countDown();
+                }
+            }).start();
+        }
+        int[] lastSeen = new int[numProducers];
+        for (int i = 0; i < numProducers; ++i) {
+            lastSeen[i] = -1;
+        }
+        startLatch.countDown();
+        while (doneLatch.getCount() > 0) {
+            consume(queue.popAndEncode(false), lastSeen);
+        }
+        String payload;
+        while ((payload = queue.popAndEncode(false)) != null) {
+            consume(payload, lastSeen);
+        }
+        for (int i = 0; i < numProducers; ++i) {
+            assertEquals("Producer" + i + " lost messages", messagesPerProducer - 1, lastSeen[i]);
+        }
+    }
+
+    private static void consume(String payload, int[] lastSeen) {
+        if (payload == null) {
+            return;
+        }
+        int pos = 0;
+        while (pos < payload.length() && payload.charAt(pos) != '*') {
+            int spaceIdx = payload.indexOf(' ', pos);
+            int msgLen = Integer.parseInt(payload.substring(pos, spaceIdx));
+            String message = payload.substring(spaceIdx + 1, spaceIdx + 1 + msgLen);
+            pos = spaceIdx + 1 + msgLen;
+
+            // Format is: S1<status> Producer<i> n<value>
+            int idStart = message.indexOf(' ') + 1;
+            int idEnd = message.indexOf(' ', idStart);
+            int producer = Integer.parseInt(message.substring(idStart + "Producer".length(), idEnd));
+            int value = Integer.parseInt(message.substring(idEnd + 2));
+            assertEquals("Out of order message from Producer" + producer, lastSeen[producer] + 1, value);
+            lastSeen[producer] = value;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.apache.cordova.test;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import junit.framework.TestCase;
+
+import org.apache.cordova.App;
+import org.apache.cordova.CordovaPlugin;
+import org.apache.cordova.PluginEntry;
+import org.apache.cordova.PluginFactory;
+
+public class PluginFactoryTest extends TestCase {
+    public static class NoDefaultConstructorPlugin extends CordovaPlugin {
+        public NoDefaultConstructorPlugin(int unused) {
+        }
+    }
+
+    private PluginFactory factory;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        // Generated from res/xml/config.xml by the build.
+        factory = (PluginFactory) Class.forName("org.apache.cordova.GeneratedPluginFactory").newInstance();
+    }
+
+    public void testCreatesServicesFromConfig() {
+        assertTrue(factory.create("App", "org.apache.cordova.App") instanceof App);
+        assertTrue(factory.create("Activity", "org.apache.cordova.test.ActivityPlugin") instanceof ActivityPlugin);
+        assertNotSame(factory.create("App", "org.apache.cordova.App"), factory.create("App", "org.apache.cordova.App"));
+    }
+
+    public void testIgnoresUnknownServices() {
+        assertNull(factory.create("NotInConfig", "org.apache.cordova.App"));
+    }
+
+    public void testIgnoresRemappedServices() {
+        assertNull(factory.create("App", "org.apache.cordova.test.ActivityPlugin"));
+    }
+
+    public void testEntryFallsBackToReflection() {
+        PluginEntry entry = new PluginEntry("App", "org.apache.cordova.test.ActivityPlugin", false);
+        assertTrue(entry.createPlugin(null, null) instanceof ActivityPlugin);
+    }
+
+    public void testEntryWithoutConstructibleClassReturnsNull() {
+        assertNull(new PluginEntry("Missing", "org.apache.cordova.test.NoSuchPlugin", false).createPlugin(null, null));
+        assertNull(new PluginEntry("NoDefaultConstructor", NoDefaultConstructorPlugin.class.getName(), false).createPlugin(null, null));
+    }
+}
@@ -0,0 +1,56 @@
+package org.apache.cordova.test;
+
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import junit.framework.TestCase;
+
+import org.apache.cordova.Whitelist;
+
+public class WhitelistTest extends TestCase {
+    public void testAddingAnEntryInvalidatesCachedResults() {
+        Whitelist whitelist = new Whitelist();
+        assertFalse(whitelist.isUrlWhiteListed("http://www.apache.org/"));
+        assertFalse(whitelist.isUrlWhiteListed("http://cordova.apache.org/"));
+        whitelist.addWhiteListEntry("http://www.apache.org", false);
+        assertTrue(whitelist.isUrlWhiteListed("http://www.apache.org/"));
+        assertFalse(whitelist.isUrlWhiteListed("http://cordova.apache.org/"));
+        whitelist.addWhiteListEntry("http://*.apache.org", false);
+        assertTrue(whitelist.isUrlWhiteListed("http://cordova.apache.org/"));
+        whitelist.addWhiteListEntry("*", false);
+        assertTrue(whitelist.isUrlWhiteListed("http://example.com/"));
+    }
+
+    public void testCachesSeveralUrls() {
+        Whitelist whitelist = new Whitelist();
+        whitelist.addWhiteListEntry("http://www.apache.org", false);
+        // Alternate between more URLs than fit in the cache, then between a few.
+        for (int round = 0; round < 3; ++round) {
+            for (int i = 0; i < 40; ++i) {
+                assertEquals(i % 2 == 0, whitelist.isUrlWhiteListed(i % 2 == 0 ? "http://www.apache.org/" + i : "http://example.com/" + i));
+            }
+            for (int i = 0; i < 10; ++i) {
+                assertTrue(whitelist.isUrlWhiteListed("http://www.apache.org/page"));
+                assertFalse(whitelist.isUrlWhiteListed("http://example.com/page"));
+            }
+        }
+    }
+}